@@ -50,6 +50,15 @@ tasks {
         """.trimIndent())
     }
 
+    // Launch latency benchmark (direct vs. launcher helper); kept in the test source set
+    register<JavaExec>("launchBenchmark") {
+        group = "verification"
+        description = "Compares launch latency of the direct and helper launch backends"
+        classpath = sourceSets["test"].runtimeClasspath
+        mainClass.set("com.lemon.externaltool.core.LaunchBenchmark")
+        args = (project.findProperty("args") as String?)?.split(" ")?.filter { it.isNotEmpty() } ?: emptyList()
+    }
+
     signPlugin {
         certificateChain.set(System.getenv("CERTIFICATE_CHAIN"))
         privateKey.set(System.getenv("PRIVATE_KEY"))
@@ -0,0 +1,283 @@
+package com.lemon.externaltool.action;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFileSystemItem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * File Resolver
+ * 从 AnActionEvent 中解析目标文件
+ *
+ * Tries every known data-key strategy, but per {@code ActionPlaces} place it keeps hit counters
+ * and periodically reorders the chain so the strategy that usually wins is tried first.
+ * Diagnostics are only collected when debug logging is enabled for this class
+ * (Help | Diagnostic Tools | Debug Log Settings: {@code #com.lemon.externaltool.action.FileResolver}).
+ */
+final class FileResolver {
+
+    private static final Logger LOG = Logger.getInstance(FileResolver.class);
+
+    // Re-sort a place's chain after this many successful resolutions
+    private static final int REORDER_INTERVAL = 32;
+    // Halve all counters once a strategy reaches this many hits, so the order can adapt again
+    private static final int DECAY_THRESHOLD = 1024;
+    private static final int DIAGNOSTICS_CAPACITY = 50;
+
+    /**
+     * Resolution strategies, declared in the historical (default) order
+     */
+    enum Strategy {
+        VIRTUAL_FILE {
+            @Override
+            VirtualFile resolve(AnActionEvent e) {
+                return e.getData(CommonDataKeys.VIRTUAL_FILE);
+            }
+        },
+        VIRTUAL_FILE_ARRAY {
+            @Override
+            VirtualFile resolve(AnActionEvent e) {
+                VirtualFile[] files = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+                return files != null && files.length > 0 ? files[0] : null;
+            }
+        },
+        // PlatformDataKeys.VIRTUAL_FILE (Old API, just in case)
+        PLATFORM_VIRTUAL_FILE {
+            @Override
+            VirtualFile resolve(AnActionEvent e) {
+                return e.getData(PlatformDataKeys.VIRTUAL_FILE);
+            }
+        },
+        PSI_FILE {
+            @Override
+            VirtualFile resolve(AnActionEvent e) {
+                com.intellij.psi.PsiFile psiFile = e.getData(CommonDataKeys.PSI_FILE);
+                return psiFile != null ? psiFile.getVirtualFile() : null;
+            }
+        },
+        // LangDataKeys.PSI_FILE (Old API)
+        LANG_PSI_FILE {
+            @Override
+            VirtualFile resolve(AnActionEvent e) {
+                com.intellij.psi.PsiFile psiFile = e.getData(LangDataKeys.PSI_FILE);
+                return psiFile != null ? psiFile.getVirtualFile() : null;
+            }
+        },
+        // Might be a directory or file
+        PSI_ELEMENT {
+            @Override
+            VirtualFile resolve(AnActionEvent e) {
+                PsiElement psiElement = e.getData(CommonDataKeys.PSI_ELEMENT);
+                if (psiElement instanceof PsiFileSystemItem) {
+                    return ((PsiFileSystemItem) psiElement).getVirtualFile();
+                }
+                return null;
+            }
+        },
+        // If triggered from editor
+        EDITOR {
+            @Override
+            VirtualFile resolve(AnActionEvent e) {
+                com.intellij.openapi.editor.Editor editor = e.getData(CommonDataKeys.EDITOR);
+                if (editor != null && editor.getDocument() != null) {
+                    return com.intellij.openapi.fileEditor.FileDocumentManager.getInstance()
+                            .getFile(editor.getDocument());
+                }
+                return null;
+            }
+        },
+        // In ProjectViewPopup, IntelliJ uses SELECTED_ITEMS with PsiFileNode objects
+        // Use PlatformDataKeys for compatibility (available in all versions 2020.1+)
+        SELECTED_ITEMS {
+            @Override
+            VirtualFile resolve(AnActionEvent e) {
+                Object[] selectedItems = e.getData(PlatformDataKeys.SELECTED_ITEMS);
+                if (selectedItems != null && selectedItems.length > 0) {
+                    return fromTreeNode(selectedItems[0]);
+                }
+                return null;
+            }
+        },
+        // Alternative approach, crucial for ProjectViewPopup where other strategies often fail
+        NAVIGATABLE_ARRAY {
+            @Override
+            VirtualFile resolve(AnActionEvent e) {
+                com.intellij.pom.Navigatable[] navigatables = e.getData(PlatformDataKeys.NAVIGATABLE_ARRAY);
+                if (navigatables != null && navigatables.length > 0) {
+                    return fromNavigatable(navigatables[0]);
+                }
+                return null;
+            }
+        };
+
+        @Nullable
+        abstract VirtualFile resolve(@NotNull AnActionEvent e);
+    }
+
+    private static final Strategy[] DEFAULT_ORDER = Strategy.values();
+
+    private final Map<String, PlaceStats> statsByPlace = new ConcurrentHashMap<>();
+
+    // Bounded ring buffer of recent diagnostics (debug mode only)
+    private final String[] diagnostics = new String[DIAGNOSTICS_CAPACITY];
+    private int diagnosticsNext = 0;
+    private int diagnosticsSize = 0;
+
+    /**
+     * 调试模式：仅在开启 debug 日志时记录诊断信息
+     */
+    boolean isDebugMode() {
+        return LOG.isDebugEnabled();
+    }
+
+    /**
+     * Try every strategy (adaptive order for the event's place) and return the first file found.
+     */
+    @Nullable
+    VirtualFile resolve(@NotNull AnActionEvent e) {
+        String place = e.getPlace();
+        PlaceStats stats = statsByPlace.computeIfAbsent(place != null ? place : "", p -> new PlaceStats());
+        Strategy[] order = stats.order;
+        boolean debug = isDebugMode();
+        StringBuilder trace = debug ? new StringBuilder(String.valueOf(place)).append(':') : null;
+
+        try {
+            for (Strategy strategy : order) {
+                VirtualFile file = strategy.resolve(e);
+                if (trace != null) {
+                    trace.append(' ').append(strategy).append('=').append(file != null ? file.getName() : "null");
+                }
+                if (file != null) {
+                    stats.recordHit(strategy);
+                    return file;
+                }
+            }
+        } catch (Exception ex) {
+            // Check for weird exceptions during data access
+            LOG.warn("Error resolving file", ex);
+            if (trace != null) {
+                trace.append(" exception=").append(ex);
+            }
+        } finally {
+            if (trace != null) {
+                addDiagnostic(trace.toString());
+            }
+        }
+        return null; // No file found
+    }
+
+    /**
+     * 记录一条诊断信息（仅调试模式）
+     */
+    void addDiagnostic(@NotNull String message) {
+        if (!isDebugMode()) {
+            return;
+        }
+        LOG.debug(message);
+        synchronized (diagnostics) {
+            diagnostics[diagnosticsNext] = message;
+            diagnosticsNext = (diagnosticsNext + 1) % diagnostics.length;
+            if (diagnosticsSize < diagnostics.length) {
+                diagnosticsSize++;
+            }
+        }
+    }
+
+    /**
+     * 最近的诊断信息，按时间从旧到新排列
+     */
+    @NotNull
+    List<String> getRecentDiagnostics() {
+        synchronized (diagnostics) {
+            List<String> result = new ArrayList<>(diagnosticsSize);
+            int start = (diagnosticsNext - diagnosticsSize + diagnostics.length) % diagnostics.length;
+            for (int i = 0; i < diagnosticsSize; i++) {
+                result.add(diagnostics[(start + i) % diagnostics.length]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 当前各 place 的策略顺序，用于诊断展示
+     */
+    @NotNull
+    List<String> describeStrategyOrder() {
+        List<String> result = new ArrayList<>();
+        statsByPlace.forEach((place, stats) -> result.add(place + " -> " + Arrays.toString(stats.order)));
+        return result;
+    }
+
+    @Nullable
+    static VirtualFile fromTreeNode(@Nullable Object item) {
+        // PsiFileNode is a common type in project view
+        if (item instanceof com.intellij.ide.util.treeView.AbstractTreeNode) {
+            Object value = ((com.intellij.ide.util.treeView.AbstractTreeNode<?>) item).getValue();
+            if (value instanceof PsiFileSystemItem) {
+                return ((PsiFileSystemItem) value).getVirtualFile();
+            } else if (value instanceof VirtualFile) {
+                return (VirtualFile) value;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    static VirtualFile fromNavigatable(@Nullable com.intellij.pom.Navigatable nav) {
+        if (nav instanceof com.intellij.openapi.fileEditor.OpenFileDescriptor) {
+            return ((com.intellij.openapi.fileEditor.OpenFileDescriptor) nav).getFile();
+        } else if (nav instanceof PsiElement) {
+            PsiElement psi = (PsiElement) nav;
+            if (psi instanceof PsiFileSystemItem) {
+                return ((PsiFileSystemItem) psi).getVirtualFile();
+            } else if (psi.getContainingFile() != null) {
+                return psi.getContainingFile().getVirtualFile();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Per-place hit counters and the derived strategy order
+     */
+    private static final class PlaceStats {
+        private final AtomicIntegerArray hits = new AtomicIntegerArray(DEFAULT_ORDER.length);
+        private final AtomicInteger sinceReorder = new AtomicInteger();
+        private volatile Strategy[] order = DEFAULT_ORDER;
+
+        void recordHit(Strategy strategy) {
+            int count = hits.incrementAndGet(strategy.ordinal());
+            if (count >= DECAY_THRESHOLD) {
+                for (int i = 0; i < hits.length(); i++) {
+                    hits.set(i, hits.get(i) / 2);
+                }
+            }
+            if (sinceReorder.incrementAndGet() >= REORDER_INTERVAL) {
+                sinceReorder.set(0);
+                reorder();
+            }
+        }
+
+        private void reorder() {
+            Strategy[] sorted = DEFAULT_ORDER.clone();
+            // Stable sort: ties keep the default order
+            Arrays.sort(sorted, Comparator.comparingInt((Strategy s) -> hits.get(s.ordinal())).reversed());
+            order = sorted;
+        }
+    }
+}
@@ -1,19 +1,31 @@
 package com.lemon.externaltool.action;
 
 import com.intellij.openapi.actionSystem.*;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiFileSystemItem;
 import com.lemon.externaltool.model.ExternalTool;
 import com.lemon.externaltool.service.ExternalToolService;
+import com.lemon.externaltool.service.ToolIndex;
+import com.lemon.externaltool.service.ToolSnapshot;
+import com.lemon.externaltool.util.FileTypeUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Open With Action Group
@@ -23,233 +35,192 @@ public class OpenWithActionGroup extends ActionGroup {
 
     private static final Logger LOG = Logger.getInstance(OpenWithActionGroup.class);
 
+    // Rebuilding children slower than this serves the last good array while refreshing in background
+    private static final long REBUILD_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private static final int MAX_CACHED_KEYS = 256;
+
+    private static final AnAction CONFIGURE_ACTION = new ConfigureToolsAction();
+    private static final AnAction[] CONFIGURE_ONLY = { CONFIGURE_ACTION };
+
+    // Normalized extension ("" = no extension, "*..." = multi-selection) -> finished children for a snapshot version
+    private final Map<String, CachedChildren> childrenCache = new ConcurrentHashMap<>();
+    // Tool id -> sub action, shared by every extension of the same snapshot version
+    private final Map<String, OpenWithSubAction> subActionCache = new ConcurrentHashMap<>();
+    private volatile long subActionVersion = -1;
+
+    private final FileResolver fileResolver = new FileResolver();
+    private final AnAction diagnosticsAction = new ShowDiagnosticsAction(fileResolver);
+
     @Override
     public AnAction @NotNull [] getChildren(@Nullable AnActionEvent e) {
         // Always return at least configure action to ensure menu is visible
         if (e == null) {
-            return new AnAction[] { new ConfigureToolsAction() };
+            return CONFIGURE_ONLY;
         }
 
         Project project = e.getProject();
         if (project == null) {
-            return new AnAction[] { new ConfigureToolsAction() };
+            return CONFIGURE_ONLY;
+        }
+
+        // --- MULTI-SELECTION ---
+        // Show only the tools supporting every selected file
+        VirtualFile[] selection = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+        if (selection != null && selection.length > 1) {
+            return withDiagnostics(getCachedChildren(collectExtensions(selection)));
         }
 
         // --- ROBUST FILE RESOLUTION ---
-        FileResolutionResult resolutionResult = resolveVirtualFile(e);
-        VirtualFile file = resolutionResult.getResolvedFile();
+        VirtualFile file = fileResolver.resolve(e);
 
         // --- ULTIMATE FALLBACK: FILE EDITOR MANAGER ---
         // If everything else fails, grab the currently selected file from the editor.
         // This is a "nuclear option" to ensure we almost always have a context.
-        boolean usedFallback = false;
         if (file == null) {
             VirtualFile[] selectedFiles = FileEditorManager.getInstance(project).getSelectedFiles();
             if (selectedFiles.length > 0) {
                 file = selectedFiles[0];
-                usedFallback = true;
-                resolutionResult.addStrategy("FALLBACK_EDITOR_SELECTION", file);
+                fileResolver.addDiagnostic("FALLBACK_EDITOR_SELECTION: " + file.getName());
+            } else {
+                LOG.warn("File detection failed in place: " + e.getPlace());
             }
         }
 
-        // --- DIAGNOSTIC INFO CAPTURE ---
-        String diagnosis = "";
+        // --- GET TOOLS ONLY IF FILE EXISTS ---
         if (file == null) {
-            diagnosis = "File detection failed (All resolution strategies returned null)";
-            LOG.warn("File detection failed in place: " + e.getPlace());
-        } else if (usedFallback) {
-            diagnosis = "File resolved via Fallback (Editor Selection): " + file.getName();
-        } else {
-            diagnosis = "File resolved via Context: " + file.getName();
+            return withDiagnostics(CONFIGURE_ONLY);
         }
+        String extension = FileTypeUtils.getFileExtension(file);
+        String key = extension != null ? ToolIndex.normalizeExtension(extension) : "";
+        return withDiagnostics(getCachedChildren(key, Collections.singleton(extension)));
+    }
 
-        // --- GET TOOLS ONLY IF FILE EXISTS ---
-        ExternalToolService service = ExternalToolService.getInstance();
-        List<ExternalTool> tools = new ArrayList<>();
-        if (file != null) {
-            tools = service.getToolsForFile(file);
+    /**
+     * --- DIAGNOSTIC INFO (debug mode only) ---
+     */
+    @NotNull
+    private AnAction[] withDiagnostics(@NotNull AnAction[] children) {
+        if (!fileResolver.isDebugMode()) {
+            return children;
         }
+        AnAction[] withDiagnostics = Arrays.copyOf(children, children.length + 1);
+        withDiagnostics[children.length] = diagnosticsAction;
+        return withDiagnostics;
+    }
 
-        List<AnAction> actions = new ArrayList<>();
-
-        // 1. Matched Tools
-        if (!tools.isEmpty()) {
-            for (ExternalTool tool : tools) {
-                actions.add(new OpenWithSubAction(tool));
-            }
-            actions.add(Separator.getInstance());
+    /**
+     * Children for a multi-file selection, cached under the sorted set of distinct extensions
+     */
+    @NotNull
+    private AnAction[] getCachedChildren(@NotNull Set<String> normalizedExtensions) {
+        StringBuilder key = new StringBuilder("*");
+        for (String ext : normalizedExtensions) {
+            key.append(ext != null ? ext : "").append('|');
         }
-
-        // 2. Configuration Action
-        actions.add(new ConfigureToolsAction());
-
-        return actions.toArray(new AnAction[0]);
+        return getCachedChildren(key.toString(), normalizedExtensions);
     }
 
     /**
-     * Try EVERYTHING to get a VirtualFile from the event.
-     * Returns a FileResolutionResult with diagnostic information.
+     * Distinct normalized extensions of a selection, sorted so equal selections share a cache key.
+     * A null entry stands for files without extension.
      */
     @NotNull
-    private FileResolutionResult resolveVirtualFile(AnActionEvent e) {
-        FileResolutionResult result = new FileResolutionResult();
-
-        try {
-            // 1. CommonDataKeys.VIRTUAL_FILE
-            VirtualFile file = e.getData(CommonDataKeys.VIRTUAL_FILE);
-            result.addStrategy("VIRTUAL_FILE", file);
-            if (file != null) {
-                result.setResolvedFile(file);
-                return result;
-            }
-
-            // 2. CommonDataKeys.VIRTUAL_FILE_ARRAY
-            VirtualFile[] files = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
-            result.addStrategy("VIRTUAL_FILE_ARRAY", files != null && files.length > 0 ? files[0] : null);
-            if (files != null && files.length > 0) {
-                result.setResolvedFile(files[0]);
-                return result;
-            }
-
-            // 3. PlatformDataKeys.VIRTUAL_FILE (Old API, just in case)
-            file = e.getData(PlatformDataKeys.VIRTUAL_FILE);
-            result.addStrategy("PLATFORM_VIRTUAL_FILE", file);
-            if (file != null) {
-                result.setResolvedFile(file);
-                return result;
-            }
-
-            // 4. CommonDataKeys.PSI_FILE
-            com.intellij.psi.PsiFile psiFile = e.getData(CommonDataKeys.PSI_FILE);
-            VirtualFile psiVirtualFile = psiFile != null ? psiFile.getVirtualFile() : null;
-            result.addStrategy("PSI_FILE", psiVirtualFile);
-            if (psiVirtualFile != null) {
-                result.setResolvedFile(psiVirtualFile);
-                return result;
-            }
-
-            // 5. LangDataKeys.PSI_FILE (Old API)
-            psiFile = e.getData(LangDataKeys.PSI_FILE);
-            psiVirtualFile = psiFile != null ? psiFile.getVirtualFile() : null;
-            result.addStrategy("LANG_PSI_FILE", psiVirtualFile);
-            if (psiVirtualFile != null) {
-                result.setResolvedFile(psiVirtualFile);
-                return result;
-            }
-
-            // 6. CommonDataKeys.PSI_ELEMENT (Might be a directory or file)
-            PsiElement psiElement = e.getData(CommonDataKeys.PSI_ELEMENT);
-            VirtualFile psiElementFile = null;
-            if (psiElement instanceof PsiFileSystemItem) {
-                psiElementFile = ((PsiFileSystemItem) psiElement).getVirtualFile();
-            }
-            result.addStrategy("PSI_ELEMENT", psiElementFile);
-            if (psiElementFile != null) {
-                result.setResolvedFile(psiElementFile);
-                return result;
-            }
+    private static Set<String> collectExtensions(@NotNull VirtualFile[] files) {
+        Set<String> raw = new HashSet<>();
+        for (VirtualFile f : files) {
+            raw.add(FileTypeUtils.getFileExtension(f));
+        }
+        Set<String> normalized = new TreeSet<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        for (String ext : raw) {
+            normalized.add(ext != null ? ToolIndex.normalizeExtension(ext) : null);
+        }
+        return normalized;
+    }
 
-            // 7. Editor (If triggered from editor)
-            com.intellij.openapi.editor.Editor editor = e.getData(CommonDataKeys.EDITOR);
-            VirtualFile editorFile = null;
-            if (editor != null && editor.getDocument() != null) {
-                editorFile = com.intellij.openapi.fileEditor.FileDocumentManager.getInstance()
-                        .getFile(editor.getDocument());
-            }
-            result.addStrategy("EDITOR", editorFile);
-            if (editorFile != null) {
-                result.setResolvedFile(editorFile);
-                return result;
-            }
+    /**
+     * Return the cached children for a cache key, rebuilding them only when the
+     * configuration snapshot changed. The same action instances are handed back until then.
+     */
+    @NotNull
+    private AnAction[] getCachedChildren(@NotNull String key, @NotNull Collection<String> extensions) {
+        ToolSnapshot snapshot = ExternalToolService.getInstance().getSnapshot();
 
-            // 8. SELECTED_ITEMS (Project View Nodes) - THIS IS THE KEY FOR PROJECT VIEW!
-            // In ProjectViewPopup, IntelliJ uses SELECTED_ITEMS with PsiFileNode objects
-            // Use PlatformDataKeys for compatibility (available in all versions 2020.1+)
-            Object[] selectedItems = e.getData(PlatformDataKeys.SELECTED_ITEMS);
-            VirtualFile selectedItemFile = null;
-            if (selectedItems != null && selectedItems.length > 0) {
-                Object firstItem = selectedItems[0];
-                // PsiFileNode is a common type in project view
-                if (firstItem instanceof com.intellij.ide.util.treeView.AbstractTreeNode) {
-                    com.intellij.ide.util.treeView.AbstractTreeNode<?> treeNode = (com.intellij.ide.util.treeView.AbstractTreeNode<?>) firstItem;
-                    Object value = treeNode.getValue();
-                    if (value instanceof PsiFileSystemItem) {
-                        selectedItemFile = ((PsiFileSystemItem) value).getVirtualFile();
-                    } else if (value instanceof VirtualFile) {
-                        selectedItemFile = (VirtualFile) value;
-                    }
-                }
-            }
-            result.addStrategy("SELECTED_ITEMS", selectedItemFile);
-            if (selectedItemFile != null) {
-                result.setResolvedFile(selectedItemFile);
-                return result;
-            }
+        CachedChildren cached = childrenCache.get(key);
+        if (cached != null && cached.version == snapshot.getVersion()) {
+            return cached.actions;
+        }
 
-            // 9. NAVIGATABLE_ARRAY (Alternative approach)
-            // This is crucial for ProjectViewPopup context where other strategies often
-            // fail
-            // Use PlatformDataKeys for compatibility (available in all versions 2020.1+)
-            com.intellij.pom.Navigatable[] navigatables = e.getData(PlatformDataKeys.NAVIGATABLE_ARRAY);
-            VirtualFile navigatableFile = null;
-            if (navigatables != null && navigatables.length > 0) {
-                com.intellij.pom.Navigatable nav = navigatables[0];
-                if (nav instanceof com.intellij.openapi.fileEditor.OpenFileDescriptor) {
-                    navigatableFile = ((com.intellij.openapi.fileEditor.OpenFileDescriptor) nav).getFile();
-                } else if (nav instanceof PsiElement) {
-                    PsiElement psi = (PsiElement) nav;
-                    if (psi instanceof PsiFileSystemItem) {
-                        navigatableFile = ((PsiFileSystemItem) psi).getVirtualFile();
-                    } else if (psi.getContainingFile() != null) {
-                        navigatableFile = psi.getContainingFile().getVirtualFile();
+        // Stale-while-revalidate: the last rebuild was too slow, serve it and refresh off-thread
+        if (cached != null && cached.buildNanos > REBUILD_BUDGET_NANOS) {
+            if (cached.refreshing.compareAndSet(false, true)) {
+                ApplicationManager.getApplication().executeOnPooledThread(() -> {
+                    try {
+                        rebuildChildren(key, extensions, ExternalToolService.getInstance().getSnapshot());
+                    } finally {
+                        cached.refreshing.set(false);
                     }
-                }
+                });
             }
-            result.addStrategy("NAVIGATABLE_ARRAY", navigatableFile);
-            if (navigatableFile != null) {
-                result.setResolvedFile(navigatableFile);
-                return result;
-            }
-        } catch (Exception ex) {
-            // Check for weird exceptions during data access
-            LOG.warn("Error resolving file", ex);
-            result.setException(ex);
+            return cached.actions;
         }
 
-        return result; // No file found
+        return rebuildChildren(key, extensions, snapshot).actions;
     }
 
-    /**
-     * Inner class to hold file resolution results and diagnostics
-     */
-    private static class FileResolutionResult {
-        private VirtualFile resolvedFile = null;
-        private final List<String> strategyResults = new ArrayList<>();
-        private Exception exception = null;
-
-        public void addStrategy(String strategyName, VirtualFile result) {
-            String resultStr = result != null ? result.getName() : "null";
-            strategyResults.add(strategyName + ": " + resultStr);
-        }
+    @NotNull
+    private synchronized CachedChildren rebuildChildren(@NotNull String key, @NotNull Collection<String> extensions,
+            @NotNull ToolSnapshot snapshot) {
+        long start = System.nanoTime();
 
-        public void setResolvedFile(VirtualFile file) {
-            this.resolvedFile = file;
+        if (subActionVersion != snapshot.getVersion()) {
+            subActionCache.clear();
+            subActionVersion = snapshot.getVersion();
         }
 
-        public VirtualFile getResolvedFile() {
-            return resolvedFile;
+        ExternalTool[] tools = snapshot.getIndex().lookupCommon(extensions);
+        AnAction[] actions;
+        if (tools.length == 0) {
+            actions = CONFIGURE_ONLY;
+        } else {
+            // 1. Matched Tools  2. Separator  3. Configuration Action
+            actions = new AnAction[tools.length + 2];
+            for (int i = 0; i < tools.length; i++) {
+                ExternalTool tool = tools[i];
+                actions[i] = subActionCache.computeIfAbsent(tool.getId(), id -> new OpenWithSubAction(tool));
+            }
+            actions[tools.length] = Separator.getInstance();
+            actions[tools.length + 1] = CONFIGURE_ACTION;
         }
 
-        public List<String> getStrategyResults() {
-            return strategyResults;
+        long buildNanos = System.nanoTime() - start;
+        if (buildNanos > REBUILD_BUDGET_NANOS) {
+            LOG.warn("Building 'Open With' children for '" + key + "' took "
+                    + TimeUnit.NANOSECONDS.toMillis(buildNanos) + " ms");
         }
 
-        public void setException(Exception ex) {
-            this.exception = ex;
+        CachedChildren result = new CachedChildren(snapshot.getVersion(), actions, buildNanos);
+        if (childrenCache.size() >= MAX_CACHED_KEYS) {
+            // Many distinct multi-selection combinations; start over rather than grow unbounded
+            childrenCache.clear();
         }
+        childrenCache.put(key, result);
+        return result;
+    }
 
-        public Exception getException() {
-            return exception;
+    /**
+     * Finished children array for one extension and configuration snapshot version
+     */
+    private static final class CachedChildren {
+        final long version;
+        final AnAction[] actions;
+        final long buildNanos;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        CachedChildren(long version, AnAction[] actions, long buildNanos) {
+            this.version = version;
+            this.actions = actions;
+            this.buildNanos = buildNanos;
         }
     }
 
@@ -289,4 +260,29 @@ public class OpenWithActionGroup extends ActionGroup {
             }
         }
     }
+
+    /**
+     * Shows the file resolution ring buffer; only offered while debug mode is on
+     */
+    private static class ShowDiagnosticsAction extends AnAction {
+        private final FileResolver resolver;
+
+        ShowDiagnosticsAction(FileResolver resolver) {
+            super("Show File Resolution Diagnostics");
+            this.resolver = resolver;
+        }
+
+        @Override
+        public void actionPerformed(@NotNull AnActionEvent e) {
+            StringBuilder text = new StringBuilder("Strategy order per place:\n");
+            for (String line : resolver.describeStrategyOrder()) {
+                text.append(line).append('\n');
+            }
+            text.append("\nRecent resolutions:\n");
+            for (String line : resolver.getRecentDiagnostics()) {
+                text.append(line).append('\n');
+            }
+            Messages.showInfoMessage(e.getProject(), text.toString(), "External Tool Opener Diagnostics");
+        }
+    }
 }
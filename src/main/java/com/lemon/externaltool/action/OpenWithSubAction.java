@@ -3,12 +3,20 @@ package com.lemon.externaltool.action;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.lemon.externaltool.core.MacroContext;
 import com.lemon.externaltool.model.ExternalTool;
+import com.lemon.externaltool.service.ExecutableValidationCache;
+import com.lemon.externaltool.service.FilterTarget;
 import com.lemon.externaltool.service.ToolExecutionService;
+import com.lemon.externaltool.service.ToolHealthService;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Open With Sub Action
  * 单个工具的菜单项动作
@@ -30,17 +38,78 @@ public class OpenWithSubAction extends AnAction {
     @Override
     public void actionPerformed(@NotNull AnActionEvent e) {
         Project project = e.getProject();
-        VirtualFile file = e.getData(CommonDataKeys.VIRTUAL_FILE);
+        if (project == null) {
+            return;
+        }
+
+        // Editor state for {line}/{column}/{selection} must be read here, on the EDT
+        ToolExecutionService service = ToolExecutionService.getInstance(project);
+        MacroContext context = service.captureContext(tool, e.getData(CommonDataKeys.EDITOR));
+
+        VirtualFile[] files = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+        if (tool.isFilterMode()) {
+            runFilter(e, service, context, files);
+            return;
+        }
+
+        // Multi-selection: the group only offered this tool if it supports every selected file
+        if (files != null && files.length > 1) {
+            List<String> paths = new ArrayList<>(files.length);
+            for (VirtualFile f : files) {
+                paths.add(f.getPath());
+            }
+            service.execute(tool, paths, context);
+            return;
+        }
 
-        if (project != null && file != null) {
+        VirtualFile file = e.getData(CommonDataKeys.VIRTUAL_FILE);
+        if (file == null && files != null && files.length == 1) {
+            file = files[0];
+        }
+        if (file != null) {
             // Use the new Execution Service
-            ToolExecutionService.getInstance(project).execute(tool, file.getPath());
+            service.execute(tool, file.getPath(), context);
+        }
+    }
+
+    /**
+     * 过滤模式：编辑器中为选区或整个文档，多选时逐个文件
+     */
+    private void runFilter(@NotNull AnActionEvent e, @NotNull ToolExecutionService service,
+            @NotNull MacroContext context, VirtualFile[] files) {
+        Editor editor = e.getData(CommonDataKeys.EDITOR);
+        if (files != null && files.length > 1) {
+            for (VirtualFile f : files) {
+                FilterTarget target = FilterTarget.capture(null, f);
+                if (target != null) {
+                    service.filter(tool, target, context);
+                }
+            }
+            return;
+        }
+        FilterTarget target = FilterTarget.capture(editor, e.getData(CommonDataKeys.VIRTUAL_FILE));
+        if (target != null) {
+            service.filter(tool, target, context);
         }
     }
 
     @Override
     public void update(@NotNull AnActionEvent e) {
-        // Always enable/visible if created. Logic was handled in Group.
-        e.getPresentation().setEnabledAndVisible(true);
+        // Visible if created, the group already matched the file. Grey out a tool whose executable
+        // is known to be gone; only the watched cache is consulted, never the disk.
+        e.getPresentation().setVisible(true);
+        String path = tool.getExecutablePath();
+        ExecutableValidationCache.ExecutableStatus status = path != null && !path.isEmpty()
+                ? ExecutableValidationCache.getInstance().peek(path)
+                : null;
+        boolean missing = status != null && !status.exists();
+        e.getPresentation().setEnabled(!missing);
+        String description = missing ? "Executable not found: " + path : null;
+        if (!missing && !ToolHealthService.getInstance().allowsLaunch(tool)) {
+            // Still enabled: launches fall through to the next tool for the file
+            ToolHealthService.Health health = ToolHealthService.getInstance().getHealth(tool);
+            description = "Failing, paused: " + (health != null ? health.getLastError() : "");
+        }
+        e.getPresentation().setDescription(description);
     }
 }
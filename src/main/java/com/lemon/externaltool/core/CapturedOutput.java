@@ -0,0 +1,37 @@
+package com.lemon.externaltool.core;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Captured Output
+ * 过滤器进程的退出码、标准输出和错误输出
+ */
+public final class CapturedOutput {
+
+    private final int exitCode;
+    private final String stdout;
+    private final String stderr;
+
+    CapturedOutput(int exitCode, @NotNull String stdout, @NotNull String stderr) {
+        this.exitCode = exitCode;
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    @NotNull
+    public String getStdout() {
+        return stdout;
+    }
+
+    /**
+     * 错误输出（截断到前若干字符）
+     */
+    @NotNull
+    public String getStderr() {
+        return stderr;
+    }
+}
@@ -0,0 +1,293 @@
+package com.lemon.externaltool.core;
+
+import com.lemon.externaltool.model.MultiFileMode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command Batcher
+ * 将多个文件合并为尽可能少的进程启动
+ *
+ * Works on the compiled template, so macros are expanded per argument and file paths never need
+ * re-quoting. The span of arguments that reference the file is repeated per file and the
+ * resulting command lines are split into chunks below the platform argument-length limit.
+ */
+public class CommandBatcher {
+
+    // Windows CreateProcess limit is 32767 UTF-16 chars including the terminator
+    private static final int WINDOWS_MAX_COMMAND_LINE = 32000;
+    // Conservative ARG_MAX values; argv and the environment share this budget on Unix
+    private static final int MAC_ARG_MAX = 256 * 1024;
+    private static final int LINUX_ARG_MAX = 2 * 1024 * 1024;
+    private static final int HEADROOM = 4096;
+
+    // Macros whose value depends on the target file
+    private static final String[] PER_FILE_MACROS = {
+            MacroResolver.NAME_FILE, MacroResolver.NAME_FILES, MacroResolver.NAME_FILE_DIR,
+            MacroResolver.NAME_FILE_NAME, MacroResolver.NAME_RELATIVE_PATH, MacroResolver.NAME_MODULE_DIR,
+            MacroResolver.NAME_VCS_ROOT, MacroResolver.NAME_LINE, MacroResolver.NAME_COLUMN,
+            MacroResolver.NAME_SELECTION
+    };
+
+    private final MacroResolver macroResolver;
+    private final int maxCommandLength;
+
+    public CommandBatcher(@NotNull MacroResolver macroResolver) {
+        this(macroResolver, computeMaxCommandLength());
+    }
+
+    public CommandBatcher(@NotNull MacroResolver macroResolver, int maxCommandLength) {
+        this.macroResolver = macroResolver;
+        this.maxCommandLength = maxCommandLength;
+    }
+
+    /**
+     * A single process start covering one or more files
+     */
+    public static final class Batch {
+        private final List<String> command;
+        private final List<String> files;
+        private final Path argFile;
+
+        public Batch(@NotNull List<String> command, @NotNull List<String> files, @Nullable Path argFile) {
+            this.command = command;
+            this.files = files;
+            this.argFile = argFile;
+        }
+
+        public List<String> getCommand() {
+            return command;
+        }
+
+        public int getFileCount() {
+            return files.size();
+        }
+
+        /**
+         * 本次启动覆盖的文件
+         */
+        @NotNull
+        public List<String> getFiles() {
+            return files;
+        }
+
+        /**
+         * Response file to delete once the process has exited, or null
+         */
+        @Nullable
+        public Path getArgFile() {
+            return argFile;
+        }
+    }
+
+    /**
+     * 构建批量命令
+     *
+     * @return batches, or an empty list when the template cannot take several files
+     *         (mode SEPARATE, or no argument references the file) and one process per file is needed
+     */
+    @NotNull
+    public List<Batch> buildBatches(@NotNull CommandTemplate template, @NotNull String execPath,
+            @NotNull List<String> files, @NotNull MultiFileMode mode, @NotNull MacroContext context) throws IOException {
+        if (mode == MultiFileMode.SEPARATE || files.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < template.getArgCount(); i++) {
+            if (isFileArg(template, i, mode)) {
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        if (first < 0 && mode == MultiFileMode.LIST) {
+            // No {files} in template: fall back to repeating the {file} arguments
+            return buildBatches(template, execPath, files, MultiFileMode.REPEAT, context);
+        }
+        if (first < 0) {
+            return new ArrayList<>();
+        }
+
+        // Head/tail contain no file macros, any file yields the same expansion
+        CommandTemplate.MacroValues fixedValues = macroResolver.values(execPath, files.get(0), context);
+        List<String> head = new ArrayList<>();
+        template.fill(head, 0, first, fixedValues);
+        List<String> tail = new ArrayList<>();
+        template.fill(tail, last + 1, template.getArgCount(), fixedValues);
+
+        if (mode == MultiFileMode.ARGFILE) {
+            // {file}/{files} expand to "@<argfile>", the other file macros keep the first file's values
+            Path argFile = writeArgFile(files);
+            String argFileRef = "@" + argFile;
+            List<String> command = new ArrayList<>(head);
+            template.fill(command, first, last + 1, macro ->
+                    MacroResolver.NAME_FILE.equals(macro) || MacroResolver.NAME_FILES.equals(macro)
+                            ? argFileRef
+                            : fixedValues.get(macro));
+            command.addAll(tail);
+            List<Batch> single = new ArrayList<>();
+            single.add(new Batch(command, files, argFile));
+            return single;
+        }
+
+        int groupFrom = first;
+        int groupTo = last + 1;
+        return chunk(head, tail, files, (file, out) -> template.fill(out, groupFrom, groupTo,
+                macroResolver.values(execPath, file, context)));
+    }
+
+    /**
+     * 将固定前缀后跟文件列表的命令分块（如 macOS "open -a App f1 f2 ..."）
+     */
+    @NotNull
+    public List<Batch> buildBatches(@NotNull List<String> head, @NotNull List<String> files) {
+        return chunk(head, new ArrayList<>(), files, (file, out) -> out.add(file));
+    }
+
+    /**
+     * Appends the arguments of one file to a command line
+     */
+    private interface FileExpander {
+        void expand(String file, List<String> out);
+    }
+
+    private List<Batch> chunk(List<String> head, List<String> tail, List<String> files, FileExpander expander) {
+        int fixedLength = 0;
+        for (String arg : head) {
+            fixedLength += argLength(arg);
+        }
+        for (String arg : tail) {
+            fixedLength += argLength(arg);
+        }
+
+        List<Batch> batches = new ArrayList<>();
+        List<String> current = new ArrayList<>(head);
+        int currentLength = fixedLength;
+        int currentFiles = 0;
+        int chunkStart = 0;
+        List<String> expanded = new ArrayList<>();
+
+        for (int f = 0; f < files.size(); f++) {
+            String file = files.get(f);
+            expanded.clear();
+            expander.expand(file, expanded);
+            int expandedLength = 0;
+            for (String arg : expanded) {
+                expandedLength += argLength(arg);
+            }
+
+            // Always put at least one file in a chunk, even if it alone exceeds the limit
+            if (currentFiles > 0 && currentLength + expandedLength > maxCommandLength) {
+                current.addAll(tail);
+                batches.add(new Batch(current, files.subList(chunkStart, f), null));
+                current = new ArrayList<>(head);
+                currentLength = fixedLength;
+                currentFiles = 0;
+                chunkStart = f;
+            }
+            current.addAll(expanded);
+            currentLength += expandedLength;
+            currentFiles++;
+        }
+
+        current.addAll(tail);
+        batches.add(new Batch(current, files.subList(chunkStart, files.size()), null));
+        return batches;
+    }
+
+    private static boolean isFileArg(CommandTemplate template, int index, MultiFileMode mode) {
+        if (mode == MultiFileMode.LIST) {
+            return template.argReferences(index, MacroResolver.NAME_FILES);
+        }
+        return template.argReferences(index, PER_FILE_MACROS);
+    }
+
+    /**
+     * 写入响应文件：每行一个路径，含空白或引号时加引号并转义
+     */
+    private static Path writeArgFile(List<String> files) throws IOException {
+        Path argFile = Files.createTempFile("external-tool-", ".args");
+        StringBuilder content = new StringBuilder();
+        for (String file : files) {
+            if (needsQuoting(file)) {
+                content.append('"');
+                for (int i = 0; i < file.length(); i++) {
+                    char c = file.charAt(i);
+                    if (c == '"' || c == '\\') {
+                        content.append('\\');
+                    }
+                    content.append(c);
+                }
+                content.append('"');
+            } else {
+                content.append(file);
+            }
+            content.append('\n');
+        }
+        Files.write(argFile, content.toString().getBytes(StandardCharsets.UTF_8));
+        return argFile;
+    }
+
+    private static boolean needsQuoting(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c) || c == '"' || c == '\'') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cost of one argument against the limit: UTF-8 bytes plus terminator and argv pointer on
+     * Unix, quotes and separator on Windows.
+     */
+    private static int argLength(String arg) {
+        if (isWindows()) {
+            return arg.length() + 3;
+        }
+        int bytes = 0;
+        for (int i = 0; i < arg.length(); i++) {
+            char c = arg.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes + 1 + 8;
+    }
+
+    private static int computeMaxCommandLength() {
+        if (isWindows()) {
+            return WINDOWS_MAX_COMMAND_LINE;
+        }
+        int argMax = System.getProperty("os.name").toLowerCase().contains("mac") ? MAC_ARG_MAX : LINUX_ARG_MAX;
+        // The child's environment is copied into the same area as argv
+        long envBytes = 0;
+        for (Map.Entry<String, String> entry : System.getenv().entrySet()) {
+            envBytes += entry.getKey().length() + entry.getValue().length() + 2 + 8;
+        }
+        return (int) Math.max(argMax / 4, argMax - envBytes - HEADROOM);
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name").toLowerCase().contains("win");
+    }
+}
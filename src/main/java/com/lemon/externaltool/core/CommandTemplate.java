@@ -0,0 +1,295 @@
+package com.lemon.externaltool.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Command Template
+ * 预编译的命令模板：参数列表由字面量与宏片段组成
+ *
+ * Syntax: arguments are separated by whitespace; double quotes group text containing spaces and
+ * may be adjacent to other text, e.g. --out="{fileDir}/x". Single quotes are ordinary characters
+ * unless the tool opts in to shell-style single quoting. A known macro name in braces is a macro,
+ * doubled braces are literal braces, and any other brace (e.g. {name} in a format string or a jq
+ * filter) is kept literally; such names are reported by {@link #getUnknownMacros()}. Macros are
+ * expanded per argument at launch, so expanded values are never re-tokenized and may contain
+ * spaces or quotes.
+ */
+public final class CommandTemplate {
+
+    private final String source;
+    private final boolean singleQuotes;
+    private final Arg[] args;
+    private final Set<String> macros;
+    private final Set<String> unknownMacros;
+
+    private CommandTemplate(String source, boolean singleQuotes, Arg[] args, Set<String> macros,
+            Set<String> unknownMacros) {
+        this.source = source;
+        this.singleQuotes = singleQuotes;
+        this.args = args;
+        this.macros = macros;
+        this.unknownMacros = unknownMacros;
+    }
+
+    /**
+     * Supplies macro values while filling a template
+     */
+    public interface MacroValues {
+        @NotNull
+        String get(@NotNull String macro);
+    }
+
+    /**
+     * One argv element: literal parts interleaved with macro names
+     */
+    static final class Arg {
+        // parts[i] is a macro name when macro[i], otherwise literal text
+        final String[] parts;
+        final boolean[] macro;
+        // Non-null when the argument contains no macro at all
+        final String literal;
+
+        Arg(List<String> parts, List<Boolean> macro) {
+            this.parts = parts.toArray(new String[0]);
+            this.macro = new boolean[parts.size()];
+            boolean hasMacro = false;
+            for (int i = 0; i < this.macro.length; i++) {
+                this.macro[i] = macro.get(i);
+                hasMacro |= this.macro[i];
+            }
+            this.literal = hasMacro ? null : String.join("", parts);
+        }
+
+        boolean references(String name) {
+            for (int i = 0; i < parts.length; i++) {
+                if (macro[i] && parts[i].equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 编译命令模板（单引号为普通字符）
+     *
+     * @throws TemplateSyntaxException on unterminated quotes or unclosed macros
+     */
+    @NotNull
+    public static CommandTemplate compile(@NotNull String template) throws TemplateSyntaxException {
+        return compile(template, false);
+    }
+
+    /**
+     * 编译命令模板
+     *
+     * @param singleQuotes whether single quotes group text like double quotes do
+     * @throws TemplateSyntaxException on unterminated quotes or unclosed macros
+     */
+    @NotNull
+    public static CommandTemplate compile(@NotNull String template, boolean singleQuotes)
+            throws TemplateSyntaxException {
+        List<Arg> args = new ArrayList<>();
+        Set<String> macros = new LinkedHashSet<>();
+        Set<String> unknownMacros = new LinkedHashSet<>();
+
+        List<String> parts = new ArrayList<>();
+        List<Boolean> macroFlags = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean inArg = false;
+        char quote = 0;
+        int quoteStart = -1;
+
+        int i = 0;
+        int n = template.length();
+        while (i < n) {
+            char c = template.charAt(i);
+
+            if (quote == 0 && Character.isWhitespace(c)) {
+                if (inArg) {
+                    endArg(literal, parts, macroFlags, args);
+                    inArg = false;
+                }
+                i++;
+                continue;
+            }
+
+            inArg = true;
+            if (quote == 0 && (c == '"' || (singleQuotes && c == '\''))) {
+                quote = c;
+                quoteStart = i;
+                i++;
+            } else if (c == quote) {
+                quote = 0;
+                i++;
+            } else if (c == '{' && i + 1 < n && template.charAt(i + 1) == '{') {
+                literal.append('{');
+                i += 2;
+            } else if (c == '}' && i + 1 < n && template.charAt(i + 1) == '}') {
+                literal.append('}');
+                i += 2;
+            } else if (c == '{' && i + 1 < n && isMacroStart(template.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < n && isMacroChar(template.charAt(end))) {
+                    end++;
+                }
+                String name = template.substring(i + 1, end);
+                boolean closed = end < n && template.charAt(end) == '}';
+                if (closed && MacroResolver.isKnownMacro(name)) {
+                    flushLiteral(literal, parts, macroFlags);
+                    parts.add(name);
+                    macroFlags.add(Boolean.TRUE);
+                    macros.add(name);
+                    i = end + 1;
+                } else if (MacroResolver.isKnownMacro(name)) {
+                    throw new TemplateSyntaxException("Unclosed macro {" + name, i);
+                } else {
+                    // Not a macro (e.g. {name} in a format string or a jq filter like {a:1}),
+                    // keep the brace literally; plain names are remembered so typos can be flagged
+                    if (closed && isIdentifier(name)) {
+                        unknownMacros.add(name);
+                    }
+                    literal.append(c);
+                    i++;
+                }
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+
+        if (quote != 0) {
+            throw new TemplateSyntaxException("Unterminated " + (quote == '"' ? "double" : "single") + " quote",
+                    quoteStart);
+        }
+        if (inArg) {
+            endArg(literal, parts, macroFlags, args);
+        }
+
+        return new CommandTemplate(template, singleQuotes, args.toArray(new Arg[0]),
+                Collections.unmodifiableSet(macros), Collections.unmodifiableSet(unknownMacros));
+    }
+
+    private static void flushLiteral(StringBuilder literal, List<String> parts, List<Boolean> macroFlags) {
+        if (literal.length() > 0) {
+            parts.add(literal.toString());
+            macroFlags.add(Boolean.FALSE);
+            literal.setLength(0);
+        }
+    }
+
+    private static void endArg(StringBuilder literal, List<String> parts, List<Boolean> macroFlags,
+            List<Arg> args) {
+        flushLiteral(literal, parts, macroFlags);
+        if (parts.isEmpty()) {
+            // An empty quoted argument ("") still yields one empty argument
+            parts.add("");
+            macroFlags.add(Boolean.FALSE);
+        }
+        args.add(new Arg(parts, macroFlags));
+        parts.clear();
+        macroFlags.clear();
+    }
+
+    // Plain names that are not macros are collected for the validator; anything else is text
+    private static boolean isIdentifier(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isMacroStart(char c) {
+        return Character.isLetter(c);
+    }
+
+    private static boolean isMacroChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '.' || c == '-';
+    }
+
+    @NotNull
+    public String getSource() {
+        return source;
+    }
+
+    public boolean isSingleQuotes() {
+        return singleQuotes;
+    }
+
+    public int getArgCount() {
+        return args.length;
+    }
+
+    /**
+     * 模板中引用的宏名（不含花括号）
+     */
+    @NotNull
+    public Set<String> getMacros() {
+        return macros;
+    }
+
+    /**
+     * 花括号中不是已知宏的普通名字，按字面保留（可能是拼写错误）
+     */
+    @NotNull
+    public Set<String> getUnknownMacros() {
+        return unknownMacros;
+    }
+
+    public boolean references(@NotNull String macro) {
+        return macros.contains(macro);
+    }
+
+    /**
+     * 参数 index 是否引用了任一给定的宏
+     */
+    public boolean argReferences(int index, @NotNull String... names) {
+        for (String name : names) {
+            if (args[index].references(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 将全部参数填充到 argv
+     */
+    public void fill(@NotNull List<String> argv, @NotNull MacroValues values) {
+        fill(argv, 0, args.length, values);
+    }
+
+    /**
+     * 将参数 [from, to) 填充到 argv
+     */
+    public void fill(@NotNull List<String> argv, int from, int to, @NotNull MacroValues values) {
+        for (int a = from; a < to; a++) {
+            Arg arg = args[a];
+            if (arg.literal != null) {
+                argv.add(arg.literal);
+            } else if (arg.parts.length == 1) {
+                argv.add(values.get(arg.parts[0]));
+            } else {
+                StringBuilder sb = new StringBuilder();
+                for (int p = 0; p < arg.parts.length; p++) {
+                    sb.append(arg.macro[p] ? values.get(arg.parts[p]) : arg.parts[p]);
+                }
+                argv.add(sb.toString());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
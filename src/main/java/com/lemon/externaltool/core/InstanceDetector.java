@@ -0,0 +1,69 @@
+package com.lemon.externaltool.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Instance Detector
+ * 检测工具是否已有实例在运行（用于交接启动）
+ *
+ * Listing processes costs a few milliseconds, so one scan of executable names is shared by all
+ * tools for a short time instead of scanning per launch.
+ */
+public final class InstanceDetector {
+
+    private static final long SNAPSHOT_TTL_NANOS = 2_000_000_000L;
+
+    private static final InstanceDetector INSTANCE = new InstanceDetector();
+
+    private Set<String> runningNames;
+    private long snapshotTime;
+
+    private InstanceDetector() {
+    }
+
+    public static InstanceDetector getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 任一给定可执行文件名（不区分大小写，不含 .exe）是否有进程在运行
+     */
+    public boolean isAnyRunning(@NotNull Collection<String> executableNames) {
+        if (executableNames.isEmpty()) {
+            return false;
+        }
+        Set<String> running = snapshot();
+        for (String name : executableNames) {
+            if (name != null && running.contains(normalize(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized Set<String> snapshot() {
+        long now = System.nanoTime();
+        if (runningNames == null || now - snapshotTime > SNAPSHOT_TTL_NANOS) {
+            Set<String> names = new HashSet<>();
+            ProcessHandle.allProcesses().forEach(handle ->
+                    handle.info().command().ifPresent(command -> names.add(normalize(fileName(command)))));
+            runningNames = names;
+            snapshotTime = now;
+        }
+        return runningNames;
+    }
+
+    private static String fileName(String path) {
+        return path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+    }
+
+    private static String normalize(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".exe") ? lower.substring(0, lower.length() - 4) : lower;
+    }
+}
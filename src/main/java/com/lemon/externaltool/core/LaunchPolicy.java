@@ -0,0 +1,230 @@
+package com.lemon.externaltool.core;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.EnvironmentUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launch Policy
+ * 工具的资源策略：CPU 优先级、I/O 优先级、cgroup 内存/CPU 上限、超时
+ *
+ * Applied by {@link ProcessLauncher} by prefixing the command with the standard wrappers, each of
+ * which execs the tool, so the PID, exit code and process tree stay the tool's own:
+ * <pre>
+ * systemd-run --user --scope --quiet -p MemoryMax=..M -p CPUQuota=..% -- nice -n N ionice -c 3 tool ...
+ * </pre>
+ * Wrappers that are not available on this system are skipped (logged once). Windows has no
+ * equivalent command line wrappers, so only the timeout applies there. The timeout only limits
+ * filter runs ({@link ProcessLauncher#capture}); launched tools such as editors run until closed.
+ */
+public final class LaunchPolicy {
+
+    private static final Logger LOG = Logger.getInstance(LaunchPolicy.class);
+
+    public static final LaunchPolicy DEFAULT = new LaunchPolicy(0, false, 0, 0, 0);
+
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
+    private static final boolean LINUX = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("linux");
+
+    // Resolved once per session
+    private static volatile String nicePath;
+    private static volatile String ionicePath;
+    private static volatile Boolean systemdScopes;
+
+    private final int niceness;
+    private final boolean idleIo;
+    private final int memoryLimitMb;
+    private final int cpuQuotaPercent;
+    private final int timeoutSeconds;
+
+    /**
+     * @param niceness        nice increment 1..19, 0 = unchanged
+     * @param idleIo          only use disk I/O when nobody else does (Linux ionice idle class)
+     * @param memoryLimitMb   cgroup v2 MemoryMax, 0 = none
+     * @param cpuQuotaPercent cgroup v2 CPUQuota (100 = one core), 0 = none
+     * @param timeoutSeconds  wall clock limit of a filter run, its process tree is killed after it;
+     *                        0 = the default filter timeout
+     */
+    public LaunchPolicy(int niceness, boolean idleIo, int memoryLimitMb, int cpuQuotaPercent, int timeoutSeconds) {
+        this.niceness = Math.max(0, Math.min(19, niceness));
+        this.idleIo = idleIo;
+        this.memoryLimitMb = Math.max(0, memoryLimitMb);
+        this.cpuQuotaPercent = Math.max(0, cpuQuotaPercent);
+        this.timeoutSeconds = Math.max(0, timeoutSeconds);
+    }
+
+    public int getNiceness() {
+        return niceness;
+    }
+
+    public boolean isIdleIo() {
+        return idleIo;
+    }
+
+    public int getMemoryLimitMb() {
+        return memoryLimitMb;
+    }
+
+    public int getCpuQuotaPercent() {
+        return cpuQuotaPercent;
+    }
+
+    public long getTimeoutMillis() {
+        return TimeUnit.SECONDS.toMillis(timeoutSeconds);
+    }
+
+    public boolean hasTimeout() {
+        return timeoutSeconds > 0;
+    }
+
+    /**
+     * 是否需要包装命令
+     */
+    public boolean hasLimits() {
+        return niceness > 0 || idleIo || memoryLimitMb > 0 || cpuQuotaPercent > 0;
+    }
+
+    /**
+     * 在命令前加上可用的包装程序
+     */
+    @NotNull
+    public List<String> wrap(@NotNull List<String> command) {
+        if (!hasLimits() || WINDOWS) {
+            return command;
+        }
+        List<String> wrapped = new ArrayList<>(command.size() + 12);
+        if ((memoryLimitMb > 0 || cpuQuotaPercent > 0) && hasSystemdScopes()) {
+            wrapped.add("systemd-run");
+            wrapped.add("--user");
+            wrapped.add("--scope");
+            wrapped.add("--quiet");
+            if (memoryLimitMb > 0) {
+                wrapped.add("-p");
+                wrapped.add("MemoryMax=" + memoryLimitMb + "M");
+            }
+            if (cpuQuotaPercent > 0) {
+                wrapped.add("-p");
+                wrapped.add("CPUQuota=" + cpuQuotaPercent + "%");
+            }
+            wrapped.add("--");
+        }
+        if (niceness > 0) {
+            String nice = nice();
+            if (nice != null) {
+                wrapped.add(nice);
+                wrapped.add("-n");
+                wrapped.add(String.valueOf(niceness));
+            }
+        }
+        if (idleIo && LINUX) {
+            String ionice = ionice();
+            if (ionice != null) {
+                wrapped.add(ionice);
+                wrapped.add("-c");
+                wrapped.add("3");
+            }
+        }
+        if (wrapped.isEmpty()) {
+            return command;
+        }
+        wrapped.addAll(command);
+        return Collections.unmodifiableList(wrapped);
+    }
+
+    @Nullable
+    private static String nice() {
+        String path = nicePath;
+        if (path == null) {
+            path = findOnPath("nice");
+            nicePath = path != null ? path : "";
+            if (path == null) {
+                LOG.info("'nice' not found, CPU priority of tools is not lowered");
+            }
+        }
+        return path == null || path.isEmpty() ? null : path;
+    }
+
+    @Nullable
+    private static String ionice() {
+        String path = ionicePath;
+        if (path == null) {
+            path = findOnPath("ionice");
+            ionicePath = path != null ? path : "";
+            if (path == null) {
+                LOG.info("'ionice' not found, I/O priority of tools is not lowered");
+            }
+        }
+        return path == null || path.isEmpty() ? null : path;
+    }
+
+    /**
+     * cgroup v2 with a user systemd instance that accepts transient scopes; probed once
+     */
+    private static boolean hasSystemdScopes() {
+        Boolean available = systemdScopes;
+        if (available == null) {
+            available = LINUX
+                    && Files.exists(Paths.get("/sys/fs/cgroup/cgroup.controllers"))
+                    && findOnPath("systemd-run") != null
+                    && probeSystemdScope();
+            systemdScopes = available;
+            if (!available) {
+                LOG.info("cgroup v2 user scopes unavailable, memory/CPU caps of tools are not applied");
+            }
+        }
+        return available;
+    }
+
+    private static boolean probeSystemdScope() {
+        try {
+            Process probe = new ProcessBuilder("systemd-run", "--user", "--scope", "--quiet", "--", "true")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!probe.waitFor(2, TimeUnit.SECONDS)) {
+                probe.destroyForcibly();
+                return false;
+            }
+            return probe.exitValue() == 0;
+        } catch (IOException e) {
+            LOG.debug("systemd-run probe failed", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Shell environment PATH, not the process's own (minimal when launched from the macOS Dock)
+    @Nullable
+    private static String findOnPath(String name) {
+        String path = EnvironmentUtil.getValue("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            File candidate = new File(dir, name);
+            if (candidate.isFile() && candidate.canExecute()) {
+                return candidate.getPath();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "LaunchPolicy{nice=" + niceness + ", idleIo=" + idleIo + ", memoryMb=" + memoryLimitMb
+                + ", cpu%=" + cpuQuotaPercent + ", timeoutS=" + timeoutSeconds + '}';
+    }
+}
@@ -0,0 +1,71 @@
+package com.lemon.externaltool.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Launched Process
+ * 已启动的外部进程（由 IDE 直接启动或由启动助手进程代为启动）
+ *
+ * A tool started by the launcher helper is not a child of the IDE, so there is no
+ * {@link Process}; its PID and exit code are reported by the helper instead.
+ */
+public final class LaunchedProcess {
+
+    private final long pid;
+    private final CompletableFuture<Integer> exitCode;
+    private final Process process;
+
+    LaunchedProcess(long pid, @NotNull CompletableFuture<Integer> exitCode, @Nullable Process process) {
+        this.pid = pid;
+        this.exitCode = exitCode;
+        this.process = process;
+    }
+
+    @NotNull
+    static LaunchedProcess of(@NotNull Process process) {
+        return new LaunchedProcess(process.pid(), process.onExit().thenApply(Process::exitValue), process);
+    }
+
+    public long pid() {
+        return pid;
+    }
+
+    /**
+     * 进程退出时以退出码完成；退出码未知时为 -1
+     */
+    @NotNull
+    public CompletableFuture<Integer> onExit() {
+        return exitCode;
+    }
+
+    public boolean isAlive() {
+        return !exitCode.isDone();
+    }
+
+    /**
+     * 直接启动时的 Process，由助手进程启动时为 null
+     */
+    @Nullable
+    public Process getProcess() {
+        return process;
+    }
+
+    /**
+     * 终止进程及其子进程
+     */
+    public void destroy() {
+        ProcessHandle handle = process != null ? process.toHandle() : ProcessHandle.of(pid).orElse(null);
+        if (handle != null) {
+            handle.descendants().forEach(ProcessHandle::destroy);
+            handle.destroy();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PID " + pid;
+    }
+}
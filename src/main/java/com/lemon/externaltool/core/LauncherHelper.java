@@ -0,0 +1,246 @@
+package com.lemon.externaltool.core;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Launcher Helper
+ * 启动助手进程的 IDE 端客户端
+ *
+ * Protocol (big-endian, strings are length-prefixed UTF-8, -1 = null):
+ * <pre>
+ * request  'L' id:int cwd:str argc:int argv:str* envCount:int (key:str value:str)*
+ *          'Q'                       quit
+ * reply    'S' id:int pid:long       started
+ *          'F' id:int message:str    failed to start
+ *          'X' id:int exitCode:int   exited
+ * </pre>
+ * Transport problems surface as {@link HelperUnavailableException} so the caller can fall back
+ * to launching directly; a tool the helper failed to start is a plain {@link IOException}.
+ */
+final class LauncherHelper {
+
+    private static final Logger LOG = Logger.getInstance(LauncherHelper.class);
+
+    private static final long START_TIMEOUT_MS = 10_000;
+    private static final long SPAWN_TIMEOUT_MS = 5_000;
+
+    private final Process helper;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<Long>> pendingStarts = new ConcurrentHashMap<>();
+    private final Map<Integer, CompletableFuture<Integer>> exits = new ConcurrentHashMap<>();
+    // PIDs of tools still running, to keep observing them if the helper goes away
+    private final Map<Integer, Long> pids = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * The helper process can no longer be used
+     */
+    static final class HelperUnavailableException extends IOException {
+        HelperUnavailableException(String message, @Nullable Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private LauncherHelper(Process helper) {
+        this.helper = helper;
+        this.out = new DataOutputStream(new BufferedOutputStream(helper.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(helper.getInputStream()));
+    }
+
+    /**
+     * 启动助手 JVM（使用 IDE 自带的 JRE，小堆、仅 C1 编译）
+     */
+    @NotNull
+    static LauncherHelper start() throws HelperUnavailableException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", isWindows() ? "java.exe" : "java").toString());
+        command.add("-Xms8m");
+        command.add("-Xmx32m");
+        command.add("-XX:+UseSerialGC");
+        command.add("-XX:TieredStopAtLevel=1");
+        command.add("-Xshare:auto");
+        command.add("-cp");
+        command.add(classPath());
+        command.add(LauncherHelperMain.class.getName());
+
+        Process process;
+        try {
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+            process = pb.start();
+        } catch (IOException e) {
+            throw new HelperUnavailableException("Failed to start launcher helper", e);
+        }
+
+        LauncherHelper client = new LauncherHelper(process);
+        Thread reader = new Thread(client::readReplies, "External Tool Launcher Helper");
+        reader.setDaemon(true);
+        reader.start();
+        LOG.info("Launcher helper started, PID " + process.pid());
+        return client;
+    }
+
+    boolean isAlive() {
+        return !closed && helper.isAlive();
+    }
+
+    /**
+     * 请求助手启动进程，等待其返回 PID
+     */
+    @NotNull
+    LaunchedProcess launch(@NotNull List<String> command, @Nullable File cwd, @NotNull Map<String, String> env)
+            throws IOException {
+        if (!isAlive()) {
+            throw new HelperUnavailableException("Launcher helper is not running", null);
+        }
+        int id = nextId.incrementAndGet();
+        CompletableFuture<Long> started = new CompletableFuture<>();
+        CompletableFuture<Integer> exited = new CompletableFuture<>();
+        pendingStarts.put(id, started);
+        exits.put(id, exited);
+
+        try {
+            synchronized (out) {
+                out.writeByte(LauncherHelperMain.REQUEST_LAUNCH);
+                out.writeInt(id);
+                LauncherHelperMain.writeString(out, cwd != null ? cwd.getPath() : null);
+                out.writeInt(command.size());
+                for (String arg : command) {
+                    LauncherHelperMain.writeString(out, arg);
+                }
+                out.writeInt(env.size());
+                for (Map.Entry<String, String> entry : env.entrySet()) {
+                    LauncherHelperMain.writeString(out, entry.getKey());
+                    LauncherHelperMain.writeString(out, entry.getValue());
+                }
+                out.flush();
+            }
+            // The first launch also pays for the helper's JVM startup
+            long pid = started.get(id == 1 ? START_TIMEOUT_MS : SPAWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return new LaunchedProcess(pid, exited, null);
+        } catch (ExecutionException e) {
+            exits.remove(id);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (IOException | TimeoutException e) {
+            exits.remove(id);
+            close();
+            throw new HelperUnavailableException("Launcher helper did not respond", e);
+        } catch (InterruptedException e) {
+            exits.remove(id);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for launcher helper", e);
+        } finally {
+            pendingStarts.remove(id);
+        }
+    }
+
+    private void readReplies() {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                int id = in.readInt();
+                if (type == LauncherHelperMain.REPLY_STARTED) {
+                    long pid = in.readLong();
+                    pids.put(id, pid);
+                    CompletableFuture<Long> started = pendingStarts.get(id);
+                    if (started != null) {
+                        started.complete(pid);
+                    }
+                } else if (type == LauncherHelperMain.REPLY_FAILED) {
+                    String message = LauncherHelperMain.readString(in);
+                    CompletableFuture<Long> started = pendingStarts.get(id);
+                    if (started != null) {
+                        started.completeExceptionally(new IOException(message));
+                    }
+                } else if (type == LauncherHelperMain.REPLY_EXITED) {
+                    int exitCode = in.readInt();
+                    pids.remove(id);
+                    CompletableFuture<Integer> exited = exits.remove(id);
+                    if (exited != null) {
+                        exited.complete(exitCode);
+                    }
+                } else {
+                    throw new IOException("Unknown reply type " + type);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                LOG.warn("Launcher helper connection lost", e);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 关闭助手；已由它启动的工具继续运行，之后改为轮询其 PID 获知退出
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            synchronized (out) {
+                out.writeByte(LauncherHelperMain.REQUEST_QUIT);
+                out.flush();
+                out.close();
+            }
+        } catch (IOException ignored) {
+        }
+        for (CompletableFuture<Long> started : pendingStarts.values()) {
+            started.completeExceptionally(new HelperUnavailableException("Launcher helper closed", null));
+        }
+        // Keep observing orphaned tools by PID; their exit codes are unknown
+        exits.forEach((id, exited) -> {
+            Long pid = pids.get(id);
+            ProcessHandle handle = pid != null ? ProcessHandle.of(pid).orElse(null) : null;
+            if (handle != null) {
+                handle.onExit().thenRun(() -> exited.complete(-1));
+            } else {
+                exited.complete(-1);
+            }
+        });
+        exits.clear();
+        pids.clear();
+    }
+
+    private static String classPath() throws HelperUnavailableException {
+        try {
+            return Paths.get(LauncherHelperMain.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .toString();
+        } catch (URISyntaxException | RuntimeException e) {
+            throw new HelperUnavailableException("Cannot locate launcher helper classes", e);
+        }
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name").toLowerCase().contains("win");
+    }
+}
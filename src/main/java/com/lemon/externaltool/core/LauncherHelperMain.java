@@ -0,0 +1,130 @@
+package com.lemon.externaltool.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Launcher Helper Main
+ * 启动助手进程入口：代替 IDE 启动外部工具
+ *
+ * Runs in a small separate JVM, so tools are spawned from a process with a tiny heap instead of
+ * the IDE. Uses JDK classes only. Requests arrive on stdin and replies go to stdout, see
+ * {@link LauncherHelper} for the protocol. The helper exits when stdin is closed (the IDE went
+ * away); tools it started keep running.
+ */
+public final class LauncherHelperMain {
+
+    static final byte REQUEST_LAUNCH = 'L';
+    static final byte REQUEST_QUIT = 'Q';
+    static final byte REPLY_STARTED = 'S';
+    static final byte REPLY_FAILED = 'F';
+    static final byte REPLY_EXITED = 'X';
+
+    private LauncherHelperMain() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+
+        while (true) {
+            byte type;
+            try {
+                type = in.readByte();
+            } catch (EOFException e) {
+                break;
+            }
+            if (type == REQUEST_QUIT) {
+                break;
+            }
+            if (type != REQUEST_LAUNCH) {
+                throw new IOException("Unknown request type " + type);
+            }
+
+            int id = in.readInt();
+            String cwd = readString(in);
+            int argc = in.readInt();
+            List<String> command = new ArrayList<>(argc);
+            for (int i = 0; i < argc; i++) {
+                command.add(readString(in));
+            }
+            int envCount = in.readInt();
+            ProcessBuilder pb = new ProcessBuilder(command);
+            Map<String, String> env = envCount > 0 ? pb.environment() : null;
+            for (int i = 0; i < envCount; i++) {
+                String key = readString(in);
+                String value = readString(in);
+                env.put(key, value);
+            }
+            if (cwd != null) {
+                pb.directory(new File(cwd));
+            }
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+            try {
+                Process process = pb.start();
+                process.getOutputStream().close();
+                synchronized (out) {
+                    out.writeByte(REPLY_STARTED);
+                    out.writeInt(id);
+                    out.writeLong(process.pid());
+                    out.flush();
+                }
+                process.onExit().thenAccept(p -> reply(out, REPLY_EXITED, id, p.exitValue()));
+            } catch (IOException | RuntimeException e) {
+                synchronized (out) {
+                    out.writeByte(REPLY_FAILED);
+                    out.writeInt(id);
+                    writeString(out, String.valueOf(e.getMessage()));
+                    out.flush();
+                }
+            }
+        }
+        // Children are not destroyed on exit
+        System.exit(0);
+    }
+
+    private static void reply(DataOutputStream out, byte type, int id, int value) {
+        synchronized (out) {
+            try {
+                out.writeByte(type);
+                out.writeInt(id);
+                out.writeInt(value);
+                out.flush();
+            } catch (IOException ignored) {
+                // IDE is gone
+            }
+        }
+    }
+
+    // Length-prefixed UTF-8; -1 encodes null (writeUTF is limited to 64K)
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
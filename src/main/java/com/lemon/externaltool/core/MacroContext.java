@@ -0,0 +1,161 @@
+package com.lemon.externaltool.core;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.LogicalPosition;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vcs.ProjectLevelVcsManager;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Macro Context
+ * 项目相关宏的取值上下文（项目目录、模块目录、VCS 根、光标与选区）
+ *
+ * Editor state ({line}, {column}, {selection}) must be read on the EDT, so it is captured when
+ * the action runs, and only if the template references it. Module and VCS roots are looked up on
+ * first use under a read action and memoized per file.
+ */
+public final class MacroContext {
+
+    private static final String NONE = "";
+
+    private final Project project;
+    // Editor state applies only to the file shown in the editor
+    private final String editorFilePath;
+    private final String line;
+    private final String column;
+    private final String selection;
+
+    private final Map<String, String> moduleDirs = new ConcurrentHashMap<>();
+    private final Map<String, String> vcsRoots = new ConcurrentHashMap<>();
+
+    private MacroContext(@Nullable Project project, @Nullable String editorFilePath,
+            String line, String column, String selection) {
+        this.project = project;
+        this.editorFilePath = editorFilePath;
+        this.line = line;
+        this.column = column;
+        this.selection = selection;
+    }
+
+    /**
+     * 捕获上下文（在 EDT 上调用）
+     *
+     * @param editor the editor the action was invoked from, or null to use the selected editor
+     * @param macros macros referenced by the template; editor state is read only when needed
+     */
+    @NotNull
+    public static MacroContext capture(@Nullable Project project, @Nullable Editor editor,
+            @NotNull Set<String> macros) {
+        boolean needsEditor = macros.contains(MacroResolver.NAME_LINE)
+                || macros.contains(MacroResolver.NAME_COLUMN)
+                || macros.contains(MacroResolver.NAME_SELECTION);
+        if (!needsEditor) {
+            return new MacroContext(project, null, NONE, NONE, NONE);
+        }
+
+        if (editor == null && project != null) {
+            editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
+        }
+        VirtualFile editorFile = editor != null
+                ? FileDocumentManager.getInstance().getFile(editor.getDocument())
+                : null;
+        if (editorFile == null) {
+            return new MacroContext(project, null, NONE, NONE, NONE);
+        }
+
+        LogicalPosition position = editor.getCaretModel().getLogicalPosition();
+        String selected = macros.contains(MacroResolver.NAME_SELECTION)
+                ? editor.getSelectionModel().getSelectedText()
+                : null;
+        // 1-based, as expected by "file:line:column" command lines
+        return new MacroContext(project, editorFile.getPath(),
+                String.valueOf(position.line + 1),
+                String.valueOf(position.column + 1),
+                selected != null ? selected : NONE);
+    }
+
+    /**
+     * 无项目、无编辑器的上下文（仅环境宏可用）
+     */
+    @NotNull
+    public static MacroContext empty() {
+        return new MacroContext(null, null, NONE, NONE, NONE);
+    }
+
+    @NotNull
+    String getProjectDir() {
+        String basePath = project != null ? project.getBasePath() : null;
+        return basePath != null ? basePath : NONE;
+    }
+
+    @NotNull
+    String getRelativePath(@NotNull String filePath) {
+        String base = getProjectDir();
+        if (!base.isEmpty() && filePath.length() > base.length() + 1 && filePath.startsWith(base)
+                && (filePath.charAt(base.length()) == '/' || filePath.charAt(base.length()) == '\\')) {
+            return filePath.substring(base.length() + 1);
+        }
+        return filePath;
+    }
+
+    @NotNull
+    String getModuleDir(@NotNull String filePath) {
+        if (project == null) {
+            return NONE;
+        }
+        return moduleDirs.computeIfAbsent(filePath, path -> pathOf(ReadAction.compute(() -> {
+            VirtualFile file = findFile(path);
+            return file != null && !project.isDisposed()
+                    ? ProjectFileIndex.getInstance(project).getContentRootForFile(file)
+                    : null;
+        })));
+    }
+
+    @NotNull
+    String getVcsRoot(@NotNull String filePath) {
+        if (project == null) {
+            return NONE;
+        }
+        return vcsRoots.computeIfAbsent(filePath, path -> pathOf(ReadAction.compute(() -> {
+            VirtualFile file = findFile(path);
+            return file != null && !project.isDisposed()
+                    ? ProjectLevelVcsManager.getInstance(project).getVcsRootFor(file)
+                    : null;
+        })));
+    }
+
+    @NotNull
+    String getLine(@NotNull String filePath) {
+        return filePath.equals(editorFilePath) ? line : NONE;
+    }
+
+    @NotNull
+    String getColumn(@NotNull String filePath) {
+        return filePath.equals(editorFilePath) ? column : NONE;
+    }
+
+    @NotNull
+    String getSelection(@NotNull String filePath) {
+        return filePath.equals(editorFilePath) ? selection : NONE;
+    }
+
+    @Nullable
+    private static VirtualFile findFile(String path) {
+        return LocalFileSystem.getInstance().findFileByPath(path);
+    }
+
+    private static String pathOf(@Nullable VirtualFile file) {
+        return file != null ? file.getPath() : NONE;
+    }
+}
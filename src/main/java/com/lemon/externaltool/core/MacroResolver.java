@@ -1,12 +1,21 @@
 package com.lemon.externaltool.core;
 
-import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Macro Resolver
- * 负责解析和替换命令中的变量宏
+ * 负责为预编译的命令模板提供宏的取值
+ *
+ * Values are computed per lookup, and a compiled template only looks up the macros it
+ * references, so project-aware macros ({vcsRoot}, {selection}, ...) cost nothing for tools
+ * that do not use them.
  */
 public class MacroResolver {
 
@@ -15,37 +24,184 @@ public class MacroResolver {
     public static final String MACRO_FILE = "{file}";
     public static final String MACRO_FILE_DIR = "{fileDir}";
     public static final String MACRO_FILE_NAME = "{fileName}";
+    // 多文件列表宏，单文件启动时等同于 {file}
+    public static final String MACRO_FILES = "{files}";
+
+    // 模板中使用的宏名（不含花括号）
+    public static final String NAME_PATH = "path";
+    public static final String NAME_FILE = "file";
+    public static final String NAME_FILE_DIR = "fileDir";
+    public static final String NAME_FILE_NAME = "fileName";
+    public static final String NAME_FILES = "files";
+    public static final String NAME_PROJECT_DIR = "projectDir";
+    public static final String NAME_MODULE_DIR = "moduleDir";
+    public static final String NAME_VCS_ROOT = "vcsRoot";
+    public static final String NAME_RELATIVE_PATH = "relativePath";
+    public static final String NAME_LINE = "line";
+    public static final String NAME_COLUMN = "column";
+    public static final String NAME_SELECTION = "selection";
+    public static final String NAME_USER = "user";
+    public static final String NAME_HOME = "home";
+    // {env:VAR}
+    public static final String ENV_PREFIX = "env:";
+
+    private static final Set<String> KNOWN_MACROS = new HashSet<>();
+
+    static {
+        KNOWN_MACROS.add(NAME_PATH);
+        KNOWN_MACROS.add(NAME_FILE);
+        KNOWN_MACROS.add(NAME_FILE_DIR);
+        KNOWN_MACROS.add(NAME_FILE_NAME);
+        KNOWN_MACROS.add(NAME_FILES);
+        KNOWN_MACROS.add(NAME_PROJECT_DIR);
+        KNOWN_MACROS.add(NAME_MODULE_DIR);
+        KNOWN_MACROS.add(NAME_VCS_ROOT);
+        KNOWN_MACROS.add(NAME_RELATIVE_PATH);
+        KNOWN_MACROS.add(NAME_LINE);
+        KNOWN_MACROS.add(NAME_COLUMN);
+        KNOWN_MACROS.add(NAME_SELECTION);
+        KNOWN_MACROS.add(NAME_USER);
+        KNOWN_MACROS.add(NAME_HOME);
+    }
 
     /**
-     * 解析命令模板
+     * 全部已知宏名（不含 {env:VAR}）
+     */
+    @NotNull
+    public static Set<String> getKnownMacros() {
+        return Collections.unmodifiableSet(KNOWN_MACROS);
+    }
+
+    /**
+     * 是否为已知宏名
+     */
+    public static boolean isKnownMacro(@NotNull String name) {
+        return KNOWN_MACROS.contains(name) || (name.startsWith(ENV_PREFIX) && name.length() > ENV_PREFIX.length());
+    }
+
+    /**
+     * 按模板生成完整的 argv
      *
-     * @param template       命令模板
+     * @param template       预编译的命令模板
      * @param execPath       执行文件路径
      * @param targetFilePath 目标文件路径
-     * @return 解析后的命令字符串
      */
-    public String resolve(String template, String execPath, String targetFilePath) {
-        if (template == null)
-            return "";
+    @NotNull
+    public List<String> buildArgv(@NotNull CommandTemplate template, String execPath, String targetFilePath) {
+        return buildArgv(template, execPath, targetFilePath, MacroContext.empty());
+    }
+
+    @NotNull
+    public List<String> buildArgv(@NotNull CommandTemplate template, String execPath, String targetFilePath,
+            @NotNull MacroContext context) {
+        List<String> argv = new ArrayList<>(template.getArgCount());
+        template.fill(argv, values(execPath, targetFilePath, context));
+        return argv;
+    }
+
+    @NotNull
+    public CommandTemplate.MacroValues values(@Nullable String execPath, @Nullable String targetFilePath) {
+        return values(execPath, targetFilePath, MacroContext.empty());
+    }
 
-        Map<String, String> macros = new HashMap<>();
-        macros.put(MACRO_PATH, execPath);
-        macros.put(MACRO_FILE, targetFilePath);
-
-        if (targetFilePath != null) {
-            File file = new File(targetFilePath);
-            macros.put(MACRO_FILE_DIR, file.getParent() != null ? file.getParent() : "");
-            macros.put(MACRO_FILE_NAME, file.getName());
-        } else {
-            macros.put(MACRO_FILE_DIR, "");
-            macros.put(MACRO_FILE_NAME, "");
+    /**
+     * 单个目标文件的宏取值；除 {path}/{file} 外的宏仅在被引用时计算
+     */
+    @NotNull
+    public CommandTemplate.MacroValues values(@Nullable String execPath, @Nullable String targetFilePath,
+            @NotNull MacroContext context) {
+        String file = targetFilePath != null ? targetFilePath : "";
+        return macro -> {
+            switch (macro) {
+                case NAME_PATH:
+                    return execPath != null ? execPath : "";
+                case NAME_FILE:
+                case NAME_FILES:
+                    return file;
+                case NAME_FILE_DIR:
+                    return parentOf(file);
+                case NAME_FILE_NAME:
+                    return nameOf(file);
+                case NAME_PROJECT_DIR:
+                    return context.getProjectDir();
+                case NAME_RELATIVE_PATH:
+                    return context.getRelativePath(file);
+                case NAME_MODULE_DIR:
+                    return file.isEmpty() ? "" : context.getModuleDir(file);
+                case NAME_VCS_ROOT:
+                    return file.isEmpty() ? "" : context.getVcsRoot(file);
+                case NAME_LINE:
+                    return context.getLine(file);
+                case NAME_COLUMN:
+                    return context.getColumn(file);
+                case NAME_SELECTION:
+                    return context.getSelection(file);
+                default:
+                    return environmentValue(macro);
+            }
+        };
+    }
+
+    /**
+     * 展开普通文本中的环境宏（{user}、{home}、{env:VAR}），用于工具探测路径
+     * Unknown or file-related braces are kept as-is; the text is not split into arguments.
+     */
+    @NotNull
+    public static String expandText(@NotNull String text) {
+        if (text.indexOf('{') < 0) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 32);
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int end = c == '{' ? text.indexOf('}', i + 1) : -1;
+            if (end > i + 1) {
+                String name = text.substring(i + 1, end);
+                if (NAME_USER.equals(name) || NAME_HOME.equals(name) || isKnownEnvMacro(name)) {
+                    sb.append(environmentValue(name));
+                    i = end + 1;
+                    continue;
+                }
+            }
+            sb.append(c);
+            i++;
         }
+        return sb.toString();
+    }
+
+    private static boolean isKnownEnvMacro(String name) {
+        return name.startsWith(ENV_PREFIX) && name.length() > ENV_PREFIX.length();
+    }
 
-        String result = template;
-        for (Map.Entry<String, String> entry : macros.entrySet()) {
-            result = result.replace(entry.getKey(), entry.getValue());
+    private static String environmentValue(String macro) {
+        if (NAME_USER.equals(macro)) {
+            return System.getProperty("user.name", "");
         }
+        if (NAME_HOME.equals(macro)) {
+            return System.getProperty("user.home", "");
+        }
+        if (isKnownEnvMacro(macro)) {
+            String value = System.getenv(macro.substring(ENV_PREFIX.length()));
+            return value != null ? value : "";
+        }
+        return "";
+    }
+
+    private static int lastSeparator(String path) {
+        return Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+    }
+
+    private static String parentOf(String path) {
+        int sep = lastSeparator(path);
+        if (sep < 0) {
+            return "";
+        }
+        // Keep the root separator ("/" or "C:\")
+        return sep == 0 || (sep == 2 && path.charAt(1) == ':') ? path.substring(0, sep + 1) : path.substring(0, sep);
+    }
 
-        return result;
+    private static String nameOf(String path) {
+        return path.substring(lastSeparator(path) + 1);
     }
 }
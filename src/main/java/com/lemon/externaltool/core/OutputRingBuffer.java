@@ -0,0 +1,87 @@
+package com.lemon.externaltool.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Output Ring Buffer
+ * 进程输出与界面之间的定长环形缓冲区
+ *
+ * The reader thread appends, the UI periodically takes everything appended since the last take.
+ * When the reader outruns the UI, the oldest pending text is overwritten, so memory per run stays
+ * at {@code capacity} chars and the number of dropped chars is reported with the next take.
+ */
+public final class OutputRingBuffer {
+
+    private final char[] buffer;
+    private int start;
+    private int size;
+    private long dropped;
+
+    public OutputRingBuffer(int capacity) {
+        this.buffer = new char[capacity];
+    }
+
+    public synchronized void append(@NotNull CharSequence text) {
+        int length = text.length();
+        int from = 0;
+        if (length > buffer.length) {
+            // Only the tail can survive
+            from = length - buffer.length;
+            dropped += from;
+        }
+        int overflow = size + (length - from) - buffer.length;
+        if (overflow > 0) {
+            start = (start + overflow) % buffer.length;
+            size -= overflow;
+            dropped += overflow;
+        }
+        int end = (start + size) % buffer.length;
+        for (int i = from; i < length; i++) {
+            buffer[end] = text.charAt(i);
+            end = end + 1 == buffer.length ? 0 : end + 1;
+        }
+        size += length - from;
+    }
+
+    /**
+     * 取出自上次以来追加的文本并清空；无新内容时为 null
+     */
+    @Nullable
+    public synchronized Chunk take() {
+        if (size == 0 && dropped == 0) {
+            return null;
+        }
+        char[] text = new char[size];
+        int firstPart = Math.min(size, buffer.length - start);
+        System.arraycopy(buffer, start, text, 0, firstPart);
+        System.arraycopy(buffer, 0, text, firstPart, size - firstPart);
+        Chunk chunk = new Chunk(new String(text), dropped);
+        start = 0;
+        size = 0;
+        dropped = 0;
+        return chunk;
+    }
+
+    /**
+     * Text taken from the buffer, and how many chars were overwritten before it
+     */
+    public static final class Chunk {
+        private final String text;
+        private final long droppedBefore;
+
+        Chunk(String text, long droppedBefore) {
+            this.text = text;
+            this.droppedBefore = droppedBefore;
+        }
+
+        @NotNull
+        public String getText() {
+            return text;
+        }
+
+        public long getDroppedBefore() {
+            return droppedBefore;
+        }
+    }
+}
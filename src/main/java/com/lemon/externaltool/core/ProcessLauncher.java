@@ -0,0 +1,339 @@
+package com.lemon.externaltool.core;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Process Launcher
+ * 所有外部进程启动的统一后端
+ *
+ * Output nobody reads is redirected to {@link ProcessBuilder.Redirect#DISCARD}, so a plain launch
+ * needs no thread at all. Output that is consumed is drained with bulk buffers on a virtual
+ * thread (JDK 21+) or a pooled thread, and exits are observed via {@link Process#onExit()}, which
+ * is served by the JDK's shared process reaper.
+ *
+ * Optionally, plain launches are delegated to a small helper JVM ({@link LauncherHelper}), so the
+ * spawn does not have to fork the multi-gigabyte IDE process. If the helper cannot be started or
+ * stops responding, launches fall back to {@link ProcessBuilder} automatically.
+ */
+public final class ProcessLauncher {
+
+    private static final Logger LOG = Logger.getInstance(ProcessLauncher.class);
+    private static final ProcessLauncher INSTANCE = new ProcessLauncher();
+
+    private static final int BUFFER_SIZE = 8192;
+    // Only the start of a filter's stderr is kept, for the error message
+    private static final int MAX_STDERR_CHARS = 4096;
+    // Filters without a timeout of their own
+    private static final long DEFAULT_CAPTURE_TIMEOUT_MS = 60_000;
+    // Between asking a timed-out tree to terminate and killing it
+    private static final long KILL_GRACE_MS = 2_000;
+    // Give up on the helper for this session after this many failed starts
+    private static final int MAX_HELPER_FAILURES = 3;
+
+    private final ExecutorService drainExecutor = createDrainExecutor();
+
+    private volatile boolean useHelper;
+    private LauncherHelper helper;
+    private int helperFailures;
+
+    private ProcessLauncher() {
+    }
+
+    public static ProcessLauncher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Receives process output (stdout merged with stderr) in chunks
+     */
+    public interface OutputListener {
+        void onOutput(@NotNull String text);
+    }
+
+    /**
+     * 是否通过启动助手进程启动工具（全局设置）
+     */
+    public void setUseHelper(boolean useHelper) {
+        this.useHelper = useHelper;
+        if (!useHelper) {
+            shutdownHelper();
+        }
+    }
+
+    public boolean isUseHelper() {
+        return useHelper;
+    }
+
+    /**
+     * 启动进程并丢弃其输出；启用时经由启动助手，失败则自动回退为直接启动
+     */
+    @NotNull
+    public LaunchedProcess launch(@NotNull List<String> command) throws IOException {
+        return launch(command, LaunchPolicy.DEFAULT);
+    }
+
+    /**
+     * 按资源策略启动进程并丢弃其输出
+     */
+    @NotNull
+    public LaunchedProcess launch(@NotNull List<String> command, @NotNull LaunchPolicy policy) throws IOException {
+        List<String> wrapped = policy.wrap(command);
+        if (useHelper) {
+            LauncherHelper current = getHelper();
+            if (current != null) {
+                try {
+                    LaunchedProcess launched = current.launch(wrapped, null, Collections.emptyMap());
+                    LOG.info("Launched via helper (" + launched + "): " + wrapped);
+                    return launched;
+                } catch (LauncherHelper.HelperUnavailableException e) {
+                    LOG.warn("Launcher helper unavailable, launching directly", e);
+                    discardHelper(current);
+                }
+            }
+        }
+        return LaunchedProcess.of(start(wrapped));
+    }
+
+    /**
+     * 直接启动进程，可写入标准输入、可接收输出
+     *
+     * Always launched directly, the helper protocol has no stdin or output channel. Stdin text is
+     * written on the drain executor; a tool that exits early (closing the pipe) just ends the write.
+     *
+     * @param stdin    content for the tool's stdin; when null stdin is closed
+     * @param listener receives the merged output; when null the output is discarded by the OS
+     */
+    @NotNull
+    public LaunchedProcess launch(@NotNull List<String> command, @Nullable StdinContent stdin,
+            @Nullable OutputListener listener, @NotNull LaunchPolicy policy) throws IOException {
+        if (stdin == null) {
+            return LaunchedProcess.of(start(policy.wrap(command), listener));
+        }
+        LOG.info("Running command with stdin from " + stdin + ": " + command);
+        ProcessBuilder pb = new ProcessBuilder(policy.wrap(command));
+        pb.redirectErrorStream(true);
+        if (listener == null) {
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        }
+        if (stdin.getFile() != null) {
+            pb.redirectInput(stdin.getFile());
+        }
+
+        Process process = pb.start();
+        if (stdin.getFile() == null) {
+            drainExecutor.execute(() -> {
+                try {
+                    stdin.writeTo(process.getOutputStream());
+                } catch (IOException e) {
+                    // Broken pipe: the tool stopped reading
+                    LOG.debug("Stopped writing stdin of process " + process.pid(), e);
+                }
+            });
+        }
+        if (listener != null) {
+            drainExecutor.execute(() -> drain(process, listener));
+        }
+        return LaunchedProcess.of(process);
+    }
+
+    /**
+     * 运行过滤器：写入标准输入，分别收集标准输出和错误输出
+     *
+     * Stdout is kept separate from stderr so diagnostics never end up in the result. Both are read
+     * on the drain executor; a process tree still running after the policy's timeout (or
+     * {@value #DEFAULT_CAPTURE_TIMEOUT_MS} ms without one) is killed and the future fails with an
+     * {@link IOException}.
+     *
+     * @param charset encoding of the tool's stdout (normally the file's charset)
+     */
+    @NotNull
+    public CompletableFuture<CapturedOutput> capture(@NotNull List<String> command, @NotNull StdinContent stdin,
+            @NotNull Charset charset, @NotNull LaunchPolicy policy) throws IOException {
+        long timeoutMillis = policy.hasTimeout() ? policy.getTimeoutMillis() : DEFAULT_CAPTURE_TIMEOUT_MS;
+        LOG.info("Running filter with stdin from " + stdin + ": " + command);
+        ProcessBuilder pb = new ProcessBuilder(policy.wrap(command));
+        if (stdin.getFile() != null) {
+            pb.redirectInput(stdin.getFile());
+        }
+        Process process = pb.start();
+        if (stdin.getFile() == null) {
+            drainExecutor.execute(() -> {
+                try {
+                    stdin.writeTo(process.getOutputStream());
+                } catch (IOException e) {
+                    LOG.debug("Stopped writing stdin of filter " + process.pid(), e);
+                }
+            });
+        }
+
+        CompletableFuture<String> stdout = CompletableFuture.supplyAsync(
+                () -> readAll(process.getInputStream(), charset, Integer.MAX_VALUE), drainExecutor);
+        CompletableFuture<String> stderr = CompletableFuture.supplyAsync(
+                () -> readAll(process.getErrorStream(), Charset.defaultCharset(), MAX_STDERR_CHARS), drainExecutor);
+        return CompletableFuture.allOf(stdout, stderr, process.onExit())
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((ignored, failure) -> {
+                    if (failure != null) {
+                        destroyTree(process.toHandle());
+                        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                        throw new CompletionException(cause instanceof TimeoutException
+                                ? new IOException("Timed out after " + timeoutMillis + " ms")
+                                : cause);
+                    }
+                    return new CapturedOutput(process.exitValue(), stdout.join(), stderr.join());
+                });
+    }
+
+    /**
+     * 直接启动进程并丢弃其输出
+     */
+    @NotNull
+    public Process start(@NotNull List<String> command) throws IOException {
+        return start(command, null);
+    }
+
+    /**
+     * 启动进程
+     *
+     * @param listener receives the merged output; when null the output is discarded by the OS
+     */
+    @NotNull
+    public Process start(@NotNull List<String> command, @Nullable OutputListener listener) throws IOException {
+        LOG.info("Running command: " + command);
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        if (listener == null) {
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        }
+
+        Process process = pb.start();
+        // Tools never read stdin; close it so none of them waits for input
+        closeQuietly(process.getOutputStream());
+
+        if (listener != null) {
+            drainExecutor.execute(() -> drain(process, listener));
+        }
+        if (LOG.isDebugEnabled()) {
+            process.onExit().thenAccept(p -> LOG.debug("Process " + p.pid() + " exited with " + p.exitValue()));
+        }
+        return process;
+    }
+
+    @Nullable
+    private synchronized LauncherHelper getHelper() {
+        if (helper != null && helper.isAlive()) {
+            return helper;
+        }
+        helper = null;
+        if (helperFailures >= MAX_HELPER_FAILURES) {
+            return null;
+        }
+        try {
+            helper = LauncherHelper.start();
+        } catch (LauncherHelper.HelperUnavailableException e) {
+            helperFailures++;
+            LOG.warn("Failed to start launcher helper (attempt " + helperFailures + ")", e);
+        }
+        return helper;
+    }
+
+    private synchronized void discardHelper(LauncherHelper failed) {
+        failed.close();
+        helperFailures++;
+        if (helper == failed) {
+            helper = null;
+        }
+    }
+
+    private synchronized void shutdownHelper() {
+        if (helper != null) {
+            helper.close();
+            helper = null;
+        }
+        helperFailures = 0;
+    }
+
+    private static void drain(Process process, OutputListener listener) {
+        char[] buffer = new char[BUFFER_SIZE];
+        try (Reader reader = new InputStreamReader(process.getInputStream(), Charset.defaultCharset())) {
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                if (n > 0) {
+                    listener.onOutput(new String(buffer, 0, n));
+                }
+            }
+        } catch (IOException e) {
+            // Stream closed because the process was destroyed
+            LOG.debug("Output drain stopped for process " + process.pid(), e);
+        }
+    }
+
+    private static void destroyTree(@NotNull ProcessHandle handle) {
+        handle.descendants().forEach(ProcessHandle::destroy);
+        handle.destroy();
+        handle.onExit().orTimeout(KILL_GRACE_MS, TimeUnit.MILLISECONDS).whenComplete((exited, timeout) -> {
+            if (timeout != null) {
+                handle.descendants().forEach(ProcessHandle::destroyForcibly);
+                handle.destroyForcibly();
+            }
+        });
+    }
+
+    /**
+     * 读取整个流；超过 limit 的字符被丢弃，但流仍读到结束，避免进程阻塞
+     */
+    private static String readAll(InputStream stream, Charset charset, int limit) {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        try (Reader reader = new InputStreamReader(stream, charset)) {
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                int keep = Math.min(n, limit - text.length());
+                if (keep > 0) {
+                    text.append(buffer, 0, keep);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+
+    private static void closeQuietly(OutputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * JDK 21+: one virtual thread per drained process; otherwise the shared application pool
+     */
+    private static ExecutorService createDrainExecutor() {
+        try {
+            Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return (ExecutorService) executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return AppExecutorUtil.getAppExecutorService();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.lemon.externaltool.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Stdin Content
+ * 写入工具标准输入的内容：编辑器中的文本，或直接重定向磁盘文件
+ *
+ * Text is encoded through a {@link CharBuffer} view of the {@link CharSequence} into one reusable
+ * byte buffer, so a large document is streamed in fixed-size chunks and never copied into a
+ * {@code String} or a full byte array. Unmodified files are redirected by the OS instead.
+ */
+public final class StdinContent {
+
+    // Encoded bytes written per chunk
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final CharSequence text;
+    private final Charset charset;
+    private final File file;
+
+    private StdinContent(@Nullable CharSequence text, @Nullable Charset charset, @Nullable File file) {
+        this.text = text;
+        this.charset = charset;
+        this.file = file;
+    }
+
+    /**
+     * 编辑器文本；调用方需保证内容不可变（如 Document.getImmutableCharSequence）
+     */
+    @NotNull
+    public static StdinContent ofText(@NotNull CharSequence text, @NotNull Charset charset) {
+        return new StdinContent(text, charset, null);
+    }
+
+    @NotNull
+    public static StdinContent ofFile(@NotNull File file) {
+        return new StdinContent(null, null, file);
+    }
+
+    /**
+     * 直接重定向的文件，文本内容时为 null
+     */
+    @Nullable
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * 分块编码并写入，写完后关闭输出流
+     */
+    void writeTo(@NotNull OutputStream out) throws IOException {
+        try (OutputStream stream = out) {
+            CharsetEncoder encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            // A view over the sequence, characters are read on demand
+            CharBuffer in = CharBuffer.wrap(text);
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            byte[] bytes = chunk.array();
+
+            CoderResult result;
+            do {
+                result = encoder.encode(in, chunk, true);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                stream.write(bytes, 0, chunk.position());
+                chunk.clear();
+            } while (result.isOverflow());
+
+            do {
+                result = encoder.flush(chunk);
+                stream.write(bytes, 0, chunk.position());
+                chunk.clear();
+            } while (result.isOverflow());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file != null ? "file " + file : text.length() + " chars (" + charset + ")";
+    }
+}
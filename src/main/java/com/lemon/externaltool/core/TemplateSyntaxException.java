@@ -0,0 +1,22 @@
+package com.lemon.externaltool.core;
+
+/**
+ * Template Syntax Exception
+ * 命令模板语法错误（在配置时报告）
+ */
+public class TemplateSyntaxException extends Exception {
+
+    private final int position;
+
+    public TemplateSyntaxException(String message, int position) {
+        super(message + " (at column " + (position + 1) + ")");
+        this.position = position;
+    }
+
+    /**
+     * Zero-based offset of the error in the template
+     */
+    public int getPosition() {
+        return position;
+    }
+}
@@ -12,10 +12,17 @@ public class DetectedTool {
     private LocalDateTime lastDetected;
 
     public DetectedTool(ToolDefinition definition, String detectedPath, boolean available) {
+        this(definition, detectedPath, available, LocalDateTime.now());
+    }
+
+    /**
+     * @param lastDetected when the path was last verified on disk (earlier for cached results)
+     */
+    public DetectedTool(ToolDefinition definition, String detectedPath, boolean available, LocalDateTime lastDetected) {
         this.definition = definition;
         this.detectedPath = detectedPath;
         this.available = available;
-        this.lastDetected = LocalDateTime.now();
+        this.lastDetected = lastDetected;
     }
 
     public ToolDefinition getDefinition() {
@@ -2,7 +2,11 @@ package com.lemon.externaltool.model;
 
 import com.intellij.util.xmlb.annotations.Attribute;
 import com.intellij.util.xmlb.annotations.Tag;
+import com.intellij.util.xmlb.annotations.Transient;
 import com.intellij.util.xmlb.annotations.XCollection;
+import com.lemon.externaltool.core.CommandTemplate;
+import com.lemon.externaltool.core.LaunchPolicy;
+import com.lemon.externaltool.core.TemplateSyntaxException;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -16,6 +20,8 @@ import java.util.UUID;
 @Tag("tool")
 public class ExternalTool implements Serializable, Cloneable {
 
+    public static final String DEFAULT_COMMAND_TEMPLATE = "\"{path}\" \"{file}\"";
+
     @Attribute("id")
     private String id;
     @Attribute("name")
@@ -29,20 +35,67 @@ public class ExternalTool implements Serializable, Cloneable {
     private String iconPath;
     @Attribute("commandTemplate")
     private String commandTemplate;
+    // 命令模板中单引号也用于分组参数（默认单引号为普通字符）
+    @Attribute("singleQuotes")
+    private boolean singleQuotes;
     @Attribute("default")
     private boolean isDefault;
     @Attribute("sortOrder")
     private int sortOrder;
     @Attribute("enabled")
     private boolean enabled;
+    @Attribute("multiFileMode")
+    private MultiFileMode multiFileMode;
+    // 同一文件已在此工具中打开时不再重复启动
+    @Attribute("singleInstance")
+    private boolean singleInstance;
+    // 项目关闭时终止由此工具启动的进程（默认分离，进程继续运行）
+    @Attribute("terminateOnProjectClose")
+    private boolean terminateOnProjectClose;
+    // 把编辑器中的内容（含未保存修改）写入工具的标准输入
+    @Attribute("stdinMode")
+    private boolean stdinMode;
+    // 在 "External Tools" 工具窗口中显示输出（默认丢弃）
+    @Attribute("showOutput")
+    private boolean showOutput;
+    // 过滤模式：文件或选区经标准输入交给工具，用其标准输出替换原文本
+    @Attribute("filterMode")
+    private boolean filterMode;
+    // 资源策略：nice 增量、空闲 I/O、cgroup 内存(MB)/CPU(%) 上限、超时(秒)；0 表示不限制
+    @Attribute("niceness")
+    private int niceness;
+    @Attribute("idleIo")
+    private boolean idleIo;
+    @Attribute("memoryLimitMb")
+    private int memoryLimitMb;
+    @Attribute("cpuQuotaPercent")
+    private int cpuQuotaPercent;
+    @Attribute("timeoutSeconds")
+    private int timeoutSeconds;
+    // 同时运行的最大进程数，超出的启动排队；0 表示不限制
+    @Attribute("maxConcurrent")
+    private int maxConcurrent;
+    // 交接命令：已有实例运行时用它把文件交给该实例（为空表示不支持）
+    @Attribute("handoffCommand")
+    private String handoffCommand;
+    // 表示实例正在运行的可执行文件名
+    @Tag("handoffProcesses")
+    @XCollection(elementName = "process")
+    private List<String> handoffProcesses;
+
+    // 预编译的命令模板，随 commandTemplate 变化失效（不持久化）
+    private transient CommandTemplate compiledTemplate;
+    private transient CommandTemplate compiledHandoff;
 
     public ExternalTool() {
         this.id = UUID.randomUUID().toString();
         this.supportedExtensions = new ArrayList<>();
-        this.commandTemplate = "\"{path}\" \"{file}\"";
+        this.commandTemplate = DEFAULT_COMMAND_TEMPLATE;
         this.enabled = true;
         this.isDefault = false;
         this.sortOrder = 0;
+        this.multiFileMode = MultiFileMode.SEPARATE;
+        this.handoffProcesses = new ArrayList<>();
     }
 
     public ExternalTool(String name, String executablePath) {
@@ -101,6 +154,71 @@ public class ExternalTool implements Serializable, Cloneable {
         this.commandTemplate = commandTemplate;
     }
 
+    /**
+     * 获取预编译的命令模板（空模板使用默认模板）
+     * Compiled on first use after a change and cached on the tool, so launches never re-parse it.
+     */
+    @Transient
+    public CommandTemplate getCompiledTemplate() throws TemplateSyntaxException {
+        String source = commandTemplate == null || commandTemplate.trim().isEmpty()
+                ? DEFAULT_COMMAND_TEMPLATE
+                : commandTemplate;
+        CommandTemplate compiled = compiledTemplate;
+        if (compiled == null || !compiled.getSource().equals(source) || compiled.isSingleQuotes() != singleQuotes) {
+            compiled = CommandTemplate.compile(source, singleQuotes);
+            compiledTemplate = compiled;
+        }
+        return compiled;
+    }
+
+    public boolean isSingleQuotes() {
+        return singleQuotes;
+    }
+
+    public void setSingleQuotes(boolean singleQuotes) {
+        this.singleQuotes = singleQuotes;
+    }
+
+    public String getHandoffCommand() {
+        return handoffCommand;
+    }
+
+    public void setHandoffCommand(String handoffCommand) {
+        this.handoffCommand = handoffCommand;
+    }
+
+    public List<String> getHandoffProcesses() {
+        return handoffProcesses;
+    }
+
+    public void setHandoffProcesses(List<String> handoffProcesses) {
+        this.handoffProcesses = handoffProcesses;
+    }
+
+    /**
+     * 是否配置了交接命令
+     */
+    public boolean hasHandoff() {
+        return handoffCommand != null && !handoffCommand.trim().isEmpty();
+    }
+
+    /**
+     * 获取预编译的交接命令模板，未配置时为 null
+     */
+    @Transient
+    public CommandTemplate getCompiledHandoffTemplate() throws TemplateSyntaxException {
+        if (!hasHandoff()) {
+            return null;
+        }
+        CommandTemplate compiled = compiledHandoff;
+        if (compiled == null || !compiled.getSource().equals(handoffCommand)
+                || compiled.isSingleQuotes() != singleQuotes) {
+            compiled = CommandTemplate.compile(handoffCommand, singleQuotes);
+            compiledHandoff = compiled;
+        }
+        return compiled;
+    }
+
     public boolean isDefault() {
         return isDefault;
     }
@@ -125,6 +243,110 @@ public class ExternalTool implements Serializable, Cloneable {
         this.enabled = enabled;
     }
 
+    public MultiFileMode getMultiFileMode() {
+        return multiFileMode != null ? multiFileMode : MultiFileMode.SEPARATE;
+    }
+
+    public void setMultiFileMode(MultiFileMode multiFileMode) {
+        this.multiFileMode = multiFileMode;
+    }
+
+    public boolean isSingleInstance() {
+        return singleInstance;
+    }
+
+    public void setSingleInstance(boolean singleInstance) {
+        this.singleInstance = singleInstance;
+    }
+
+    public boolean isTerminateOnProjectClose() {
+        return terminateOnProjectClose;
+    }
+
+    public void setTerminateOnProjectClose(boolean terminateOnProjectClose) {
+        this.terminateOnProjectClose = terminateOnProjectClose;
+    }
+
+    public boolean isStdinMode() {
+        return stdinMode;
+    }
+
+    public void setStdinMode(boolean stdinMode) {
+        this.stdinMode = stdinMode;
+    }
+
+    public boolean isShowOutput() {
+        return showOutput;
+    }
+
+    public void setShowOutput(boolean showOutput) {
+        this.showOutput = showOutput;
+    }
+
+    public boolean isFilterMode() {
+        return filterMode;
+    }
+
+    public void setFilterMode(boolean filterMode) {
+        this.filterMode = filterMode;
+    }
+
+    public int getNiceness() {
+        return niceness;
+    }
+
+    public void setNiceness(int niceness) {
+        this.niceness = niceness;
+    }
+
+    public boolean isIdleIo() {
+        return idleIo;
+    }
+
+    public void setIdleIo(boolean idleIo) {
+        this.idleIo = idleIo;
+    }
+
+    public int getMemoryLimitMb() {
+        return memoryLimitMb;
+    }
+
+    public void setMemoryLimitMb(int memoryLimitMb) {
+        this.memoryLimitMb = memoryLimitMb;
+    }
+
+    public int getCpuQuotaPercent() {
+        return cpuQuotaPercent;
+    }
+
+    public void setCpuQuotaPercent(int cpuQuotaPercent) {
+        this.cpuQuotaPercent = cpuQuotaPercent;
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * 由资源设置组成的启动策略
+     */
+    @Transient
+    public LaunchPolicy getLaunchPolicy() {
+        return new LaunchPolicy(niceness, idleIo, memoryLimitMb, cpuQuotaPercent, timeoutSeconds);
+    }
+
     /**
      * 检查此工具是否支持指定的文件扩展名
      */
@@ -180,6 +402,9 @@ public class ExternalTool implements Serializable, Cloneable {
             } else {
                 clone.supportedExtensions = new ArrayList<>();
             }
+            clone.handoffProcesses = this.handoffProcesses != null
+                    ? new ArrayList<>(this.handoffProcesses)
+                    : new ArrayList<>();
             return clone;
         } catch (CloneNotSupportedException e) {
             throw new RuntimeException(e);
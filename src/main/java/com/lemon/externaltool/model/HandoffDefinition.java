@@ -0,0 +1,34 @@
+package com.lemon.externaltool.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handoff definition from registry
+ * 将文件交给已运行实例打开的客户端命令（如 code --reuse-window、emacsclient）
+ */
+public class HandoffDefinition {
+    // Command template, same macros as ExternalTool.commandTemplate
+    private String command;
+    // Executable names (without .exe) that indicate a running instance
+    private List<String> processes = new ArrayList<>();
+
+    public HandoffDefinition() {
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    public List<String> getProcesses() {
+        return processes;
+    }
+
+    public void setProcesses(List<String> processes) {
+        this.processes = processes;
+    }
+}
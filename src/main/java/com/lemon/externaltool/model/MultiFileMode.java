@@ -0,0 +1,39 @@
+package com.lemon.externaltool.model;
+
+/**
+ * Multi-file launch mode
+ * 多个文件发送给同一工具时的传参方式
+ */
+public enum MultiFileMode {
+    /**
+     * One process per file (default)
+     */
+    SEPARATE("One process per file"),
+    /**
+     * The arguments containing {file} are repeated for every file in one command line
+     */
+    REPEAT("Repeat {file} arguments"),
+    /**
+     * The {files} macro expands to one argument per file
+     */
+    LIST("Expand {files} list"),
+    /**
+     * All paths are written to a response file passed as @argfile
+     */
+    ARGFILE("@argfile response file");
+
+    private final String displayName;
+
+    MultiFileMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
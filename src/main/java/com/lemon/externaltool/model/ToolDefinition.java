@@ -13,9 +13,13 @@ public class ToolDefinition {
     private String name;
     private String category;
     private Map<String, List<String>> platforms = new HashMap<>();
+    // Bare command names looked up on PATH on every platform, after the platform paths
+    private List<String> commands = new ArrayList<>();
     private List<String> extensions = new ArrayList<>();
     private int priority = 5;
     private boolean userDefined = false;
+    // Optional: hand files to an already running instance
+    private HandoffDefinition handoff;
 
     public ToolDefinition() {
     }
@@ -52,6 +56,14 @@ public class ToolDefinition {
         this.platforms = platforms;
     }
 
+    public List<String> getCommands() {
+        return commands;
+    }
+
+    public void setCommands(List<String> commands) {
+        this.commands = commands;
+    }
+
     public List<String> getExtensions() {
         return extensions;
     }
@@ -76,6 +88,27 @@ public class ToolDefinition {
         this.userDefined = userDefined;
     }
 
+    public HandoffDefinition getHandoff() {
+        return handoff;
+    }
+
+    public void setHandoff(HandoffDefinition handoff) {
+        this.handoff = handoff;
+    }
+
+    /**
+     * Copy registry settings (extensions, handoff) onto a new configured tool
+     */
+    public void applyTo(ExternalTool tool) {
+        tool.setSupportedExtensions(extensions != null ? new ArrayList<>(extensions) : new ArrayList<>());
+        if (handoff != null && handoff.getCommand() != null) {
+            tool.setHandoffCommand(handoff.getCommand());
+            tool.setHandoffProcesses(handoff.getProcesses() != null
+                    ? new ArrayList<>(handoff.getProcesses())
+                    : new ArrayList<>());
+        }
+    }
+
     /**
      * Get paths for current platform
      */
@@ -0,0 +1,241 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detection Cache
+ * 工具检测结果的磁盘缓存：候选路径 -> 检测结果及其 stat 签名
+ *
+ * Stored under the IDE system directory and discarded when the registry version changes. An
+ * entry is reused while the candidate's signature (type, mtime, size, inode) is unchanged; for
+ * a candidate that did not exist, the signature of its parent directory is recorded instead,
+ * since creating the file changes the directory's mtime. Candidates in the same directory then
+ * share one stat per scan.
+ */
+@Service(Service.Level.APP)
+public final class DetectionCache {
+
+    private static final Logger LOG = Logger.getInstance(DetectionCache.class);
+
+    private static final String VERSION_KEY = "@registryVersion";
+
+    private final Path file = Paths.get(PathManager.getSystemPath(), "external-tool-opener", "detection-cache.properties");
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Guarded by this
+    private boolean loaded;
+    private String registryVersion;
+    private volatile boolean dirty;
+
+    public static DetectionCache getInstance() {
+        return ApplicationManager.getApplication().getService(DetectionCache.class);
+    }
+
+    /**
+     * stat 签名：类型、修改时间、大小、文件标识（inode，Windows 上为空）
+     */
+    static final class Signature {
+        static final Signature MISSING = new Signature('-', 0, 0, "");
+
+        private final char kind;
+        private final long mtime;
+        private final long size;
+        private final String fileKey;
+
+        private Signature(char kind, long mtime, long size, String fileKey) {
+            this.kind = kind;
+            this.mtime = mtime;
+            this.size = size;
+            this.fileKey = fileKey;
+        }
+
+        /**
+         * 读取签名（跟随符号链接，与启动时一致）
+         */
+        @NotNull
+        static Signature of(@NotNull Path path) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                char kind = attributes.isRegularFile() ? 'F' : attributes.isDirectory() ? 'D' : 'O';
+                Object key = attributes.fileKey();
+                return new Signature(kind, attributes.lastModifiedTime().toMillis(), attributes.size(),
+                        key != null ? key.toString() : "");
+            } catch (IOException | SecurityException e) {
+                return MISSING;
+            }
+        }
+
+        boolean isMissing() {
+            return kind == '-';
+        }
+
+        String encode() {
+            return kind + "|" + mtime + "|" + size + "|" + fileKey;
+        }
+
+        @Nullable
+        static Signature decode(String text) {
+            String[] parts = text.split("\\|", 4);
+            if (parts.length != 4 || parts[0].length() != 1) {
+                return null;
+            }
+            try {
+                return new Signature(parts[0].charAt(0), Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            Signature other = (Signature) o;
+            return kind == other.kind && mtime == other.mtime && size == other.size && fileKey.equals(other.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, mtime, size, fileKey);
+        }
+    }
+
+    /**
+     * 一个候选路径的检测结果
+     */
+    static final class Entry {
+        final Signature self;
+        final Signature parent;
+        final boolean valid;
+        // When the result was last verified against the disk
+        final long checkedAtMillis;
+
+        Entry(Signature self, Signature parent, boolean valid, long checkedAtMillis) {
+            this.self = self;
+            this.parent = parent;
+            this.valid = valid;
+            this.checkedAtMillis = checkedAtMillis;
+        }
+    }
+
+    /**
+     * 开始一次检测前调用；首次调用时从磁盘加载
+     */
+    public synchronized void open(@Nullable String version) {
+        if (!loaded) {
+            loaded = true;
+            load();
+        }
+        if (!Objects.equals(version, registryVersion)) {
+            if (!entries.isEmpty()) {
+                LOG.info("Registry version changed (" + registryVersion + " -> " + version + "), detection cache cleared");
+            }
+            entries.clear();
+            registryVersion = version;
+            dirty = true;
+        }
+    }
+
+    @Nullable
+    Entry get(@NotNull String path) {
+        return entries.get(path);
+    }
+
+    void put(@NotNull String path, @NotNull Entry entry) {
+        entries.put(path, entry);
+        dirty = true;
+    }
+
+    /**
+     * 有变化时写回磁盘（先写临时文件再替换）
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        Properties properties = new Properties();
+        if (registryVersion != null) {
+            properties.setProperty(VERSION_KEY, registryVersion);
+        }
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            properties.setProperty(e.getKey(), (entry.valid ? "1" : "0") + ";" + entry.checkedAtMillis + ";"
+                    + entry.self.encode() + ";" + entry.parent.encode());
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "External Tool Opener detection cache");
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            LOG.warn("Failed to save detection cache to " + file, e);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("Ignoring unreadable detection cache " + file, e);
+            return;
+        }
+        registryVersion = properties.getProperty(VERSION_KEY);
+        for (String path : properties.stringPropertyNames()) {
+            if (path.equals(VERSION_KEY)) {
+                continue;
+            }
+            String[] parts = properties.getProperty(path).split(";", 4);
+            if (parts.length != 4) {
+                continue;
+            }
+            Signature self = Signature.decode(parts[2]);
+            Signature parent = Signature.decode(parts[3]);
+            if (self == null || parent == null) {
+                continue;
+            }
+            try {
+                entries.put(path, new Entry(self, parent, "1".equals(parts[0]), Long.parseLong(parts[1])));
+            } catch (NumberFormatException ignored) {
+                // Skip the damaged entry
+            }
+        }
+        LOG.info("Loaded " + entries.size() + " cached detection results");
+    }
+}
@@ -0,0 +1,80 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.diff.comparison.ComparisonManager;
+import com.intellij.diff.comparison.ComparisonPolicy;
+import com.intellij.diff.comparison.DiffTooBigException;
+import com.intellij.diff.fragments.LineFragment;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Document Patch
+ * 过滤结果与原文本之间的最小行级差异，按差异逐段修改文档
+ *
+ * Computed off the EDT with the platform's line diff. Only changed line ranges are replaced, so
+ * markers, folding and caret positions on untouched lines survive and undo records small edits.
+ */
+final class DocumentPatch {
+
+    private final List<Edit> edits;
+
+    private DocumentPatch(List<Edit> edits) {
+        this.edits = edits;
+    }
+
+    /**
+     * 计算 original -> result 的补丁，偏移量以 baseOffset 为起点
+     */
+    @NotNull
+    static DocumentPatch compute(@NotNull CharSequence original, @NotNull CharSequence result, int baseOffset) {
+        List<Edit> edits = new ArrayList<>();
+        try {
+            List<LineFragment> fragments = ComparisonManager.getInstance()
+                    .compareLines(original, result, ComparisonPolicy.DEFAULT, new EmptyProgressIndicator());
+            for (LineFragment fragment : fragments) {
+                edits.add(new Edit(baseOffset + fragment.getStartOffset1(), baseOffset + fragment.getEndOffset1(),
+                        result.subSequence(fragment.getStartOffset2(), fragment.getEndOffset2())));
+            }
+        } catch (DiffTooBigException e) {
+            // Too many changes to diff: replace the whole range
+            edits.add(new Edit(baseOffset, baseOffset + original.length(), result));
+        }
+        // Applied back to front so earlier offsets stay valid
+        Collections.reverse(edits);
+        return new DocumentPatch(edits);
+    }
+
+    boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    int size() {
+        return edits.size();
+    }
+
+    /**
+     * 应用到文档；须在写命令中调用
+     */
+    void applyTo(@NotNull Document document) {
+        for (Edit edit : edits) {
+            document.replaceString(edit.start, edit.end, edit.text);
+        }
+    }
+
+    private static final class Edit {
+        final int start;
+        final int end;
+        final CharSequence text;
+
+        Edit(int start, int end, CharSequence text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+    }
+}
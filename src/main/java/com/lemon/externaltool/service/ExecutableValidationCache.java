@@ -0,0 +1,285 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Executable Validation Cache
+ * 可执行文件状态缓存：路径 -> 是否存在 / 文件 / 目录 / 可执行 / 修改时间
+ *
+ * Entries are invalidated by a {@link WatchService} on the executables' parent directories, so
+ * repeated checks (launch validation, settings, the "Open With" menu) never touch the disk while
+ * nothing changed. Directories that cannot be watched (e.g. some network drives) fall back to a
+ * short time-to-live.
+ *
+ * Symbolic links (typical for PATH installs such as {@code /usr/local/bin/code} or Homebrew's
+ * {@code bin} links into the Cellar) are followed by the check, so the target's directory is
+ * watched as well. Chains of links and dangling links fall back to the time-to-live.
+ */
+@Service(Service.Level.APP)
+public final class ExecutableValidationCache implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(ExecutableValidationCache.class);
+
+    // Used for entries whose parent directory could not be watched
+    private static final long UNWATCHED_TTL_NANOS = 30_000_000_000L;
+
+    private final Map<String, ExecutableStatus> statuses = new ConcurrentHashMap<>();
+    // Watched parent directory -> executable paths cached under it
+    private final Map<Path, Set<String>> watchedDirs = new ConcurrentHashMap<>();
+    // Cached symlink path -> its real target, watched in the target's directory
+    private final Map<String, Path> linkTargets = new ConcurrentHashMap<>();
+    private final Set<Path> unwatchableDirs = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingLoads = ConcurrentHashMap.newKeySet();
+    private final WatchService watchService;
+
+    public ExecutableValidationCache() {
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.warn("File watching unavailable, executable checks expire after a timeout", e);
+        }
+        this.watchService = service;
+        if (service != null) {
+            Thread watcher = new Thread(this::processEvents, "External Tool Executable Watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    public static ExecutableValidationCache getInstance() {
+        return ApplicationManager.getApplication().getService(ExecutableValidationCache.class);
+    }
+
+    /**
+     * Filesystem state of an executable path at the time it was checked
+     */
+    public static final class ExecutableStatus {
+        private final boolean exists;
+        private final boolean file;
+        private final boolean directory;
+        private final boolean executable;
+        private final long lastModified;
+        private final long checkedAt;
+        private final boolean watched;
+
+        ExecutableStatus(boolean exists, boolean file, boolean directory, boolean executable, long lastModified,
+                boolean watched) {
+            this.exists = exists;
+            this.file = file;
+            this.directory = directory;
+            this.executable = executable;
+            this.lastModified = lastModified;
+            this.checkedAt = System.nanoTime();
+            this.watched = watched;
+        }
+
+        public boolean exists() {
+            return exists;
+        }
+
+        public boolean isFile() {
+            return file;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public boolean canExecute() {
+            return executable;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * 可以启动：macOS 应用包是目录，其它情况是文件
+         */
+        public boolean isLaunchable(boolean appBundle) {
+            return appBundle ? directory : file;
+        }
+
+        boolean isExpired() {
+            return !watched && System.nanoTime() - checkedAt > UNWATCHED_TTL_NANOS;
+        }
+    }
+
+    /**
+     * 获取路径状态，缓存失效时同步检查磁盘
+     */
+    @NotNull
+    public ExecutableStatus get(@NotNull String path) {
+        ExecutableStatus status = statuses.get(path);
+        if (status == null || status.isExpired()) {
+            status = load(path);
+        }
+        return status;
+    }
+
+    /**
+     * 仅返回已缓存的状态，不访问磁盘；未缓存时在后台加载并返回 null
+     */
+    @Nullable
+    public ExecutableStatus peek(@NotNull String path) {
+        ExecutableStatus status = statuses.get(path);
+        if (status != null && !status.isExpired()) {
+            return status;
+        }
+        if (pendingLoads.add(path)) {
+            ApplicationManager.getApplication().executeOnPooledThread(() -> {
+                try {
+                    load(path);
+                } finally {
+                    pendingLoads.remove(path);
+                }
+            });
+        }
+        return status;
+    }
+
+    public void invalidate(@NotNull String path) {
+        statuses.remove(path);
+    }
+
+    @NotNull
+    private ExecutableStatus load(@NotNull String path) {
+        Path file;
+        try {
+            file = Paths.get(path);
+        } catch (InvalidPathException e) {
+            ExecutableStatus invalid = new ExecutableStatus(false, false, false, false, 0, true);
+            statuses.put(path, invalid);
+            return invalid;
+        }
+
+        // Register before reading so a change right after the read still invalidates the entry
+        boolean watched = watch(file.toAbsolutePath().getParent(), path);
+        if (Files.isSymbolicLink(file)) {
+            watched &= watchLinkTarget(file, path);
+        } else {
+            linkTargets.remove(path);
+        }
+
+        ExecutableStatus status;
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            status = new ExecutableStatus(true, attrs.isRegularFile(), attrs.isDirectory(),
+                    Files.isExecutable(file), attrs.lastModifiedTime().toMillis(), watched);
+        } catch (IOException | SecurityException e) {
+            status = new ExecutableStatus(false, false, false, false, 0, watched);
+        }
+        statuses.put(path, status);
+        return status;
+    }
+
+    /**
+     * Watch the directory of a symlink's target; false when the entry has to rely on the TTL
+     */
+    private boolean watchLinkTarget(@NotNull Path link, @NotNull String path) {
+        try {
+            Path hop = link.toAbsolutePath().resolveSibling(Files.readSymbolicLink(link));
+            if (Files.isSymbolicLink(hop)) {
+                // A chain: a change at an intermediate link would go unnoticed
+                linkTargets.remove(path);
+                return false;
+            }
+            Path target = link.toRealPath();
+            linkTargets.put(path, target);
+            return watch(target.getParent(), path);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // Dangling: nothing to watch until the target appears
+            linkTargets.remove(path);
+            return false;
+        }
+    }
+
+    private boolean watch(@Nullable Path dir, @NotNull String path) {
+        if (watchService == null || dir == null || unwatchableDirs.contains(dir)) {
+            return false;
+        }
+        Set<String> paths = watchedDirs.get(dir);
+        if (paths == null) {
+            if (!Files.isDirectory(dir)) {
+                // Nothing to watch yet; re-check after the TTL in case it appears
+                return false;
+            }
+            try {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+                LOG.debug("Cannot watch " + dir, e);
+                unwatchableDirs.add(dir);
+                return false;
+            }
+            paths = watchedDirs.computeIfAbsent(dir, d -> ConcurrentHashMap.newKeySet());
+        }
+        paths.add(path);
+        return true;
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = (Path) key.watchable();
+                Set<String> paths = watchedDirs.getOrDefault(dir, Collections.emptySet());
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || !(event.context() instanceof Path)) {
+                        paths.forEach(statuses::remove);
+                        continue;
+                    }
+                    Path changed = dir.resolve((Path) event.context());
+                    for (String path : paths) {
+                        if (Paths.get(path).toAbsolutePath().equals(changed) || changed.equals(linkTargets.get(path))) {
+                            statuses.remove(path);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    // Directory itself is gone: drop its entries and watch again on next lookup
+                    watchedDirs.remove(dir);
+                    paths.forEach(statuses::remove);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Disposed
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+        statuses.clear();
+        watchedDirs.clear();
+        linkTargets.clear();
+    }
+}
@@ -7,16 +7,20 @@ import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.lemon.externaltool.core.ProcessLauncher;
+import com.lemon.externaltool.core.TemplateSyntaxException;
 import com.lemon.externaltool.model.ExternalTool;
 import com.lemon.externaltool.util.FileTypeUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * External Tool Service
@@ -30,6 +34,12 @@ public final class ExternalToolService implements PersistentStateComponent<Exter
 
     private ExternalToolState myState = new ExternalToolState();
 
+    // 写操作互斥锁；读操作只访问 volatile 快照，无需加锁
+    private final Object writeLock = new Object();
+
+    // 当前配置的不可变快照（含扩展名索引），写操作构建新快照后整体替换
+    private volatile ToolSnapshot snapshot = ToolSnapshot.EMPTY;
+
     public ExternalToolService() {
     }
 
@@ -43,17 +53,14 @@ public final class ExternalToolService implements PersistentStateComponent<Exter
      * 获取所有工具
      */
     public List<ExternalTool> getAllTools() {
-        return new ArrayList<>(myState.tools);
+        return new ArrayList<>(snapshot.getTools());
     }
 
     /**
      * 获取已启用的工具
      */
     public List<ExternalTool> getEnabledTools() {
-        return myState.tools.stream()
-                .filter(ExternalTool::isEnabled)
-                .sorted(Comparator.comparingInt(ExternalTool::getSortOrder))
-                .collect(Collectors.toList());
+        return new ArrayList<>(Arrays.asList(snapshot.getIndex().getEnabledTools()));
     }
 
     /**
@@ -66,16 +73,48 @@ public final class ExternalToolService implements PersistentStateComponent<Exter
         }
 
         String extension = FileTypeUtils.getFileExtension(file);
-        List<ExternalTool> enabledTools = getEnabledTools();
-        List<ExternalTool> matchingTools = enabledTools.stream()
-                .filter(tool -> tool.supportsExtension(extension))
-                .collect(Collectors.toList());
+        ExternalTool[] matchingTools = snapshot.getIndex().lookup(extension);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("File: " + file.getName() + ", Extension: " + extension +
+                    ", Matching tools: " + matchingTools.length);
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(matchingTools));
+    }
+
+    /**
+     * 获取同时适用于所有指定文件的工具列表（多选）
+     */
+    public List<ExternalTool> getToolsForFiles(@NotNull VirtualFile[] files) {
+        Set<String> extensions = new HashSet<>();
+        for (VirtualFile file : files) {
+            extensions.add(FileTypeUtils.getFileExtension(file));
+        }
+        return Collections.unmodifiableList(Arrays.asList(snapshot.getIndex().lookupCommon(extensions)));
+    }
+
+    /**
+     * 获取当前配置快照（无锁读取）
+     */
+    @NotNull
+    public ToolSnapshot getSnapshot() {
+        return snapshot;
+    }
 
-        LOG.info("File: " + file.getName() + ", Extension: " + extension +
-                ", Enabled tools: " + enabledTools.size() +
-                ", Matching tools: " + matchingTools.size());
+    /**
+     * 当前配置快照的版本号，每次配置变更后递增
+     */
+    public long getSnapshotVersion() {
+        return snapshot.getVersion();
+    }
 
-        return matchingTools;
+    /**
+     * 获取当前的扩展名索引
+     */
+    @NotNull
+    public ToolIndex getToolIndex() {
+        return snapshot.getIndex();
     }
 
     /**
@@ -90,22 +129,28 @@ public final class ExternalToolService implements PersistentStateComponent<Exter
         if (tool == null)
             return;
 
-        // 查找是否已存在
-        int index = -1;
-        for (int i = 0; i < myState.tools.size(); i++) {
-            if (myState.tools.get(i).getId().equals(tool.getId())) {
-                index = i;
-                break;
+        synchronized (writeLock) {
+            List<ExternalTool> tools = new ArrayList<>(myState.tools);
+
+            // 查找是否已存在
+            int index = -1;
+            for (int i = 0; i < tools.size(); i++) {
+                if (tools.get(i).getId().equals(tool.getId())) {
+                    index = i;
+                    break;
+                }
             }
-        }
 
-        if (index >= 0) {
-            // 更新现有工具
-            myState.tools.set(index, tool);
-        } else {
-            // 添加新工具
-            tool.setSortOrder(myState.tools.size());
-            myState.tools.add(tool);
+            if (index >= 0) {
+                // 更新现有工具
+                tools.set(index, tool.clone());
+            } else {
+                // 添加新工具（复制后再修改，调用方的实例可能仍被旧快照引用）
+                ExternalTool added = tool.clone();
+                added.setSortOrder(tools.size());
+                tools.add(added);
+            }
+            publish(tools);
         }
     }
 
@@ -113,7 +158,11 @@ public final class ExternalToolService implements PersistentStateComponent<Exter
      * 删除工具配置
      */
     public void deleteToolConfig(String toolId) {
-        myState.tools.removeIf(tool -> tool.getId().equals(toolId));
+        synchronized (writeLock) {
+            List<ExternalTool> tools = new ArrayList<>(myState.tools);
+            tools.removeIf(tool -> tool.getId().equals(toolId));
+            publish(tools);
+        }
     }
 
     /**
@@ -121,20 +170,46 @@ public final class ExternalToolService implements PersistentStateComponent<Exter
      */
     @Nullable
     public ExternalTool getToolById(String toolId) {
-        return myState.tools.stream()
-                .filter(tool -> tool.getId().equals(toolId))
-                .findFirst()
-                .orElse(null);
+        for (ExternalTool tool : snapshot.getTools()) {
+            if (tool.getId().equals(toolId)) {
+                return tool;
+            }
+        }
+        return null;
     }
 
     /**
      * 更新工具排序
+     * Tools whose position changes are copied first: the published snapshot shares its instances,
+     * and readers of that version must not see the new order before it is published.
      */
     public void updateToolOrder(List<ExternalTool> orderedTools) {
-        for (int i = 0; i < orderedTools.size(); i++) {
-            orderedTools.get(i).setSortOrder(i);
+        synchronized (writeLock) {
+            List<ExternalTool> tools = new ArrayList<>(orderedTools.size());
+            for (int i = 0; i < orderedTools.size(); i++) {
+                ExternalTool tool = orderedTools.get(i);
+                if (tool.getSortOrder() != i) {
+                    tool = tool.clone();
+                    tool.setSortOrder(i);
+                }
+                tools.add(tool);
+            }
+            publish(tools);
         }
-        this.myState.tools = new ArrayList<>(orderedTools);
+    }
+
+    /**
+     * 是否通过启动助手进程启动工具
+     */
+    public boolean isUseLauncherHelper() {
+        return myState.useLauncherHelper;
+    }
+
+    public void setUseLauncherHelper(boolean useLauncherHelper) {
+        synchronized (writeLock) {
+            myState.useLauncherHelper = useLauncherHelper;
+        }
+        ProcessLauncher.getInstance().setUseHelper(useLauncherHelper);
     }
 
     /**
@@ -149,13 +224,19 @@ public final class ExternalToolService implements PersistentStateComponent<Exter
     @Nullable
     @Override
     public ExternalToolState getState() {
-        return myState;
+        synchronized (writeLock) {
+            return myState;
+        }
     }
 
     @Override
     public void loadState(@NotNull ExternalToolState state) {
-        this.myState = state;
-        deduplicateIds();
+        synchronized (writeLock) {
+            List<ExternalTool> tools = state.tools != null ? new ArrayList<>(state.tools) : new ArrayList<>();
+            this.myState = state;
+            publish(tools);
+            ProcessLauncher.getInstance().setUseHelper(state.useLauncherHelper);
+        }
     }
 
     @Override
@@ -166,21 +247,21 @@ public final class ExternalToolService implements PersistentStateComponent<Exter
     // XML序列化支持的getter/setter
 
     public List<ExternalTool> getTools() {
-        return myState.tools;
+        return snapshot.getTools();
     }
 
     /**
      * 确保所有工具ID唯一（修复可能的配置损坏）
      */
-    private void deduplicateIds() {
-        if (myState.tools == null)
-            return;
-
+    private static void deduplicateIds(List<ExternalTool> tools) {
         java.util.Set<String> ids = new java.util.HashSet<>();
-        for (ExternalTool tool : myState.tools) {
-            // 如果ID为空或重复，生成新ID
+        for (int i = 0; i < tools.size(); i++) {
+            ExternalTool tool = tools.get(i);
+            // 如果ID为空或重复，生成新ID（修改副本，不动旧快照中的实例）
             if (tool.getId() == null || ids.contains(tool.getId())) {
+                tool = tool.clone();
                 tool.setId(UUID.randomUUID().toString());
+                tools.set(i, tool);
                 LOG.info("Regenerated ID for tool: " + tool.getName());
             }
             ids.add(tool.getId());
@@ -188,7 +269,48 @@ public final class ExternalToolService implements PersistentStateComponent<Exter
     }
 
     public void setTools(List<ExternalTool> tools) {
-        myState.tools = new ArrayList<>(tools);
-        deduplicateIds();
+        synchronized (writeLock) {
+            publish(new ArrayList<>(tools));
+        }
+    }
+
+    /**
+     * 发布新的配置快照（调用方需持有 writeLock）
+     * The state list is replaced rather than mutated, so a concurrent serializer or reader
+     * holding the previous list never observes a partial update.
+     */
+    private void publish(List<ExternalTool> tools) {
+        deduplicateIds(tools);
+        precompileTemplates(tools);
+        myState.tools = tools;
+        snapshot = ToolSnapshot.create(snapshot.getVersion() + 1, tools);
+        prefetchExecutables(tools);
+    }
+
+    /**
+     * 后台预取可执行文件状态，菜单弹出时直接读缓存
+     */
+    private static void prefetchExecutables(List<ExternalTool> tools) {
+        ExecutableValidationCache cache = ExecutableValidationCache.getInstance();
+        for (ExternalTool tool : tools) {
+            String path = tool.getExecutablePath();
+            if (tool.isEnabled() && path != null && !path.isEmpty()) {
+                cache.peek(path);
+            }
+        }
+    }
+
+    /**
+     * 预编译命令模板，启动时无需再解析
+     */
+    private static void precompileTemplates(List<ExternalTool> tools) {
+        for (ExternalTool tool : tools) {
+            try {
+                tool.getCompiledTemplate();
+            } catch (TemplateSyntaxException e) {
+                // Reported again when the tool is launched or edited
+                LOG.warn("Invalid command template for tool " + tool.getName() + ": " + e.getMessage());
+            }
+        }
     }
 }
@@ -17,6 +17,9 @@ public class ExternalToolState {
     @XCollection(elementName = "tool")
     public List<ExternalTool> tools = new ArrayList<>();
 
+    // 通过启动助手进程启动工具（避免从大堆 IDE 进程 fork）
+    public boolean useLauncherHelper = false;
+
     public List<ExternalTool> getTools() {
         return tools;
     }
@@ -24,4 +27,12 @@ public class ExternalToolState {
     public void setTools(List<ExternalTool> tools) {
         this.tools = tools;
     }
+
+    public boolean isUseLauncherHelper() {
+        return useLauncherHelper;
+    }
+
+    public void setUseLauncherHelper(boolean useLauncherHelper) {
+        this.useLauncherHelper = useLauncherHelper;
+    }
 }
@@ -0,0 +1,114 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.SelectionModel;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.Charset;
+
+/**
+ * Filter Target
+ * 过滤模式的输入：文档或选区在捕获时刻的快照
+ *
+ * Holds the document's immutable text and modification stamp, so the result can be diffed off
+ * the EDT and is only applied if the document was not edited while the tool ran.
+ */
+public final class FilterTarget {
+
+    private final Document document;
+    private final String filePath;
+    private final Charset charset;
+    private final CharSequence text;
+    private final int startOffset;
+    private final int endOffset;
+    private final long modificationStamp;
+    private final boolean selection;
+
+    private FilterTarget(Document document, String filePath, Charset charset, CharSequence text,
+            int startOffset, int endOffset, boolean selection) {
+        this.document = document;
+        this.filePath = filePath;
+        this.charset = charset;
+        this.text = text;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.modificationStamp = document.getModificationStamp();
+        this.selection = selection;
+    }
+
+    /**
+     * 捕获编辑器的选区（无选区时为整个文档）；在 EDT 上调用
+     */
+    @Nullable
+    public static FilterTarget capture(@Nullable Editor editor, @Nullable VirtualFile file) {
+        if (editor != null) {
+            Document document = editor.getDocument();
+            VirtualFile editorFile = FileDocumentManager.getInstance().getFile(document);
+            if (editorFile != null && (file == null || editorFile.equals(file))) {
+                SelectionModel selection = editor.getSelectionModel();
+                if (selection.hasSelection()) {
+                    return of(document, editorFile, selection.getSelectionStart(), selection.getSelectionEnd());
+                }
+                return of(document, editorFile, 0, document.getTextLength());
+            }
+        }
+        if (file == null || file.isDirectory()) {
+            return null;
+        }
+        Document document = FileDocumentManager.getInstance().getDocument(file);
+        return document != null ? of(document, file, 0, document.getTextLength()) : null;
+    }
+
+    private static FilterTarget of(Document document, VirtualFile file, int start, int end) {
+        CharSequence snapshot = document.getImmutableCharSequence();
+        boolean whole = start == 0 && end == snapshot.length();
+        CharSequence text = whole ? snapshot : snapshot.subSequence(start, end);
+        return new FilterTarget(document, file.getPath(), file.getCharset(), text, start, end, !whole);
+    }
+
+    @NotNull
+    public Document getDocument() {
+        return document;
+    }
+
+    @NotNull
+    public String getFilePath() {
+        return filePath;
+    }
+
+    @NotNull
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * 发送给工具的文本（不可变）
+     */
+    @NotNull
+    public CharSequence getText() {
+        return text;
+    }
+
+    public int getStartOffset() {
+        return startOffset;
+    }
+
+    public int getEndOffset() {
+        return endOffset;
+    }
+
+    public boolean isSelection() {
+        return selection;
+    }
+
+    /**
+     * 文档在捕获后是否被修改过
+     */
+    public boolean isStale() {
+        return document.getModificationStamp() != modificationStamp;
+    }
+}
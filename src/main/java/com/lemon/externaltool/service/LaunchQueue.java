@@ -0,0 +1,263 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.lemon.externaltool.model.ExternalTool;
+import com.lemon.externaltool.ui.LaunchQueuePanel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Launch Queue
+ * 按工具限制并发进程数，超出上限的启动按优先级排队
+ *
+ * A slot is taken while a launch task runs and, for tools that keep running, while the process
+ * tracked by {@link ProcessTracker} is alive. Queued launches are dispatched to the caller's
+ * executor when a tracked process exits or a task finishes, so waiting never blocks a thread.
+ * Tools without a limit bypass the queue entirely.
+ */
+@Service(Service.Level.PROJECT)
+public final class LaunchQueue implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(LaunchQueue.class);
+
+    // Single-file launches the user is waiting for go before batch launches
+    public static final int PRIORITY_INTERACTIVE = 10;
+    public static final int PRIORITY_BATCH = 0;
+
+    private static final Comparator<QueuedLaunch> ORDER = Comparator
+            .comparingInt((QueuedLaunch q) -> -q.priority)
+            .thenComparingLong(q -> q.sequence);
+
+    private final Project project;
+    // Guarded by this
+    private final List<QueuedLaunch> pending = new ArrayList<>();
+    private final Map<String, Integer> inFlight = new HashMap<>();
+    private long nextSequence;
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    public LaunchQueue(@NotNull Project project) {
+        this.project = project;
+        ProcessTracker.getInstance(project).addExitListener(tracked -> drain());
+    }
+
+    public static LaunchQueue getInstance(@NotNull Project project) {
+        return project.getService(LaunchQueue.class);
+    }
+
+    /**
+     * A launch waiting for a free slot of its tool
+     */
+    public static final class QueuedLaunch {
+        private final String toolId;
+        private final String toolName;
+        private final int maxConcurrent;
+        private final String description;
+        private final int priority;
+        private final long sequence;
+        private final long queuedAtMillis = System.currentTimeMillis();
+        private final Executor executor;
+        private final Supplier<CompletableFuture<?>> task;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private LaunchQueue queue;
+
+        QueuedLaunch(ExternalTool tool, String description, int priority, long sequence, Executor executor,
+                Supplier<CompletableFuture<?>> task) {
+            this.toolId = tool.getId();
+            this.toolName = tool.getName();
+            this.maxConcurrent = tool.getMaxConcurrent();
+            this.description = description;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.executor = executor;
+            this.task = task;
+        }
+
+        public String getToolName() {
+            return toolName;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public long getQueuedAtMillis() {
+            return queuedAtMillis;
+        }
+
+        /**
+         * 取消排队中的启动；已开始的启动不受影响
+         */
+        public void cancel() {
+            if (queue != null) {
+                queue.cancel(this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return toolName + ": " + description;
+        }
+    }
+
+    /**
+     * 在工具的并发上限内运行任务
+     *
+     * @param task runs on {@code executor} (or the calling thread when a slot is free right away);
+     *             the slot is held until the returned future completes
+     * @return completes when the task's future completes; fails with {@link CancellationException}
+     * when the launch is cancelled while queued
+     */
+    @NotNull
+    public CompletableFuture<Void> submit(@NotNull ExternalTool tool, @NotNull String description, int priority,
+            @NotNull Executor executor, @NotNull Supplier<CompletableFuture<?>> task) {
+        QueuedLaunch launch;
+        boolean queued;
+        synchronized (this) {
+            launch = new QueuedLaunch(tool, description, priority, nextSequence++, executor, task);
+            launch.queue = this;
+            queued = launch.maxConcurrent > 0 && !hasSlot(launch);
+            if (queued) {
+                pending.add(launch);
+                pending.sort(ORDER);
+                LOG.info("Queued " + launch + " (" + launch.maxConcurrent + " running)");
+            } else {
+                take(launch);
+            }
+        }
+        if (queued) {
+            fireChanged();
+            LaunchQueuePanel.show(project);
+        } else {
+            run(launch);
+        }
+        return launch.done;
+    }
+
+    /**
+     * 排队中的启动，按出队顺序排列
+     */
+    @NotNull
+    public synchronized List<QueuedLaunch> getPending() {
+        return new ArrayList<>(pending);
+    }
+
+    public void cancelAll() {
+        for (QueuedLaunch launch : getPending()) {
+            cancel(launch);
+        }
+    }
+
+    /**
+     * 队列变化时回调（任意线程）
+     */
+    public void addListener(@NotNull Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NotNull Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    private void cancel(QueuedLaunch launch) {
+        boolean removed;
+        synchronized (this) {
+            removed = pending.remove(launch);
+        }
+        if (removed) {
+            LOG.info("Cancelled queued " + launch);
+            launch.done.completeExceptionally(new CancellationException("Cancelled while queued"));
+            fireChanged();
+        }
+    }
+
+    private boolean hasSlot(QueuedLaunch launch) {
+        int used = ProcessTracker.getInstance(project).countRunning(launch.toolId)
+                + inFlight.getOrDefault(launch.toolId, 0);
+        return used < launch.maxConcurrent;
+    }
+
+    private void take(QueuedLaunch launch) {
+        inFlight.merge(launch.toolId, 1, Integer::sum);
+    }
+
+    private void release(QueuedLaunch launch) {
+        synchronized (this) {
+            inFlight.computeIfPresent(launch.toolId, (id, count) -> count > 1 ? count - 1 : null);
+        }
+        drain();
+    }
+
+    private void run(QueuedLaunch launch) {
+        CompletableFuture<?> result;
+        try {
+            result = launch.task.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, failure) -> {
+            release(launch);
+            if (failure != null) {
+                launch.done.completeExceptionally(failure);
+            } else {
+                launch.done.complete(null);
+            }
+        });
+    }
+
+    /**
+     * 派发所有已有空位的排队启动
+     */
+    private void drain() {
+        List<QueuedLaunch> ready = new ArrayList<>();
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            for (QueuedLaunch launch : new ArrayList<>(pending)) {
+                if (hasSlot(launch)) {
+                    take(launch);
+                    pending.remove(launch);
+                    ready.add(launch);
+                }
+            }
+        }
+        if (ready.isEmpty()) {
+            return;
+        }
+        for (QueuedLaunch launch : ready) {
+            // Called from process exit callbacks; never run the launch on that thread
+            launch.executor.execute(() -> run(launch));
+        }
+        fireChanged();
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        cancelAll();
+        listeners.clear();
+    }
+}
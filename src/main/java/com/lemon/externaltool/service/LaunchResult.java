@@ -0,0 +1,135 @@
+package com.lemon.externaltool.service;
+
+import com.lemon.externaltool.core.LaunchedProcess;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launch Result
+ * 一次工具启动的结果及各阶段耗时
+ *
+ * Produced by the asynchronous launch pipeline (validate -> resolve argv -> spawn -> observe).
+ * A failed launch still yields a result, with {@link #getError()} set, so callers only need
+ * to inspect the result instead of handling exceptional completion.
+ */
+public final class LaunchResult {
+
+    private final String toolName;
+    private final int fileCount;
+    private final int openedFiles;
+    private final int skippedFiles;
+    private final List<LaunchedProcess> processes;
+    private final String error;
+
+    private final long validateNanos;
+    private final long resolveNanos;
+    private final long spawnNanos;
+    private final long observeNanos;
+
+    LaunchResult(String toolName, int fileCount, int openedFiles, int skippedFiles, List<LaunchedProcess> processes,
+            @Nullable String error,
+            long validateNanos, long resolveNanos, long spawnNanos, long observeNanos) {
+        this.toolName = toolName;
+        this.fileCount = fileCount;
+        this.openedFiles = openedFiles;
+        this.skippedFiles = skippedFiles;
+        this.processes = Collections.unmodifiableList(processes);
+        this.error = error;
+        this.validateNanos = validateNanos;
+        this.resolveNanos = resolveNanos;
+        this.spawnNanos = spawnNanos;
+        this.observeNanos = observeNanos;
+    }
+
+    /**
+     * 所有文件均已成功启动
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public String getToolName() {
+        return toolName;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public int getOpenedFiles() {
+        return openedFiles;
+    }
+
+    /**
+     * 单实例工具中已打开、因此未重复启动的文件数
+     */
+    public int getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    /**
+     * 启动的进程数（批量启动时小于文件数）
+     */
+    public int getLaunches() {
+        return processes.size();
+    }
+
+    @NotNull
+    public List<LaunchedProcess> getProcesses() {
+        return processes;
+    }
+
+    /**
+     * 失败原因，成功时为 null；部分失败时为最后一个错误
+     */
+    @Nullable
+    public String getError() {
+        return error;
+    }
+
+    public long getValidateNanos() {
+        return validateNanos;
+    }
+
+    public long getResolveNanos() {
+        return resolveNanos;
+    }
+
+    public long getSpawnNanos() {
+        return spawnNanos;
+    }
+
+    public long getObserveNanos() {
+        return observeNanos;
+    }
+
+    public long getTotalNanos() {
+        return validateNanos + resolveNanos + spawnNanos + observeNanos;
+    }
+
+    /**
+     * 各阶段耗时（毫秒，用于日志）
+     */
+    @NotNull
+    public String formatTimings() {
+        return "validate=" + millis(validateNanos) + "ms, resolve=" + millis(resolveNanos)
+                + "ms, spawn=" + millis(spawnNanos) + "ms, observe=" + millis(observeNanos)
+                + "ms, total=" + millis(getTotalNanos()) + "ms";
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Override
+    public String toString() {
+        return "LaunchResult{" + toolName + ", opened " + openedFiles + "/" + fileCount
+                + (skippedFiles > 0 ? ", skipped " + skippedFiles : "")
+                + " in " + getLaunches() + " launches" + (error != null ? ", error=" + error : "")
+                + ", " + formatTimings() + "}";
+    }
+}
@@ -0,0 +1,268 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.EnvironmentUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PATH Executable Index
+ * PATH 中可执行文件名的内存索引：命令名 -> 所在目录（按 PATH 顺序）
+ *
+ * Each PATH directory is listed once and kept with its mtime; {@link #snapshot()} only stats the
+ * directories and re-lists those whose mtime changed, so resolving M command names costs one
+ * directory read per PATH entry instead of N x M stat calls. Listing does not stat entries;
+ * only the name a lookup returns is checked to be an executable file. On Windows names are
+ * matched case-insensitively and without a PATHEXT extension.
+ */
+@Service(Service.Level.APP)
+public final class PathExecutableIndex {
+
+    private static final Logger LOG = Logger.getInstance(PathExecutableIndex.class);
+
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
+    private static final List<String> PATH_EXTENSIONS = WINDOWS ? pathExtensions() : Collections.emptyList();
+
+    // Listing of one PATH directory
+    private static final class DirListing {
+        final Path dir;
+        final long mtime;
+        final Set<String> names;
+
+        DirListing(Path dir, long mtime, Set<String> names) {
+            this.dir = dir;
+            this.mtime = mtime;
+            this.names = names;
+        }
+    }
+
+    private volatile Snapshot current;
+
+    public static PathExecutableIndex getInstance() {
+        return ApplicationManager.getApplication().getService(PathExecutableIndex.class);
+    }
+
+    /**
+     * 不可变的索引快照
+     */
+    public static final class Snapshot {
+        private final String pathVariable;
+        private final List<DirListing> dirs;
+        // Command name -> directories containing it, in PATH order
+        private final Map<String, List<Path>> index;
+
+        private Snapshot(String pathVariable, List<DirListing> dirs) {
+            this.pathVariable = pathVariable;
+            this.dirs = dirs;
+            this.index = new HashMap<>();
+            for (DirListing listing : dirs) {
+                for (String name : listing.names) {
+                    index.computeIfAbsent(name, n -> new ArrayList<>(1)).add(listing.dir);
+                }
+            }
+        }
+
+        /**
+         * 解析命令名为可执行文件的绝对路径；找不到时返回 null
+         * A name that contains a path separator is not looked up.
+         */
+        @Nullable
+        public String resolve(@Nullable String command) {
+            if (command == null || command.isEmpty() || command.indexOf('/') >= 0 || command.indexOf('\\') >= 0) {
+                return null;
+            }
+            List<Path> candidates = index.get(key(command));
+            if (candidates == null) {
+                return null;
+            }
+            for (Path dir : candidates) {
+                File file = findFile(dir, command);
+                // The first executable in PATH order, like the shell
+                if (file != null && file.isFile() && file.canExecute()) {
+                    return file.getPath();
+                }
+            }
+            return null;
+        }
+
+        public int size() {
+            return index.size();
+        }
+    }
+
+    /**
+     * 当前快照；PATH 未变且各目录 mtime 未变时直接复用
+     * PATH comes from the login shell environment: an IDE started from the macOS Dock only
+     * inherits launchd's minimal PATH, which lacks Homebrew and ~/.local/bin.
+     */
+    @NotNull
+    public Snapshot snapshot() {
+        String pathVariable = EnvironmentUtil.getValue("PATH");
+        if (pathVariable == null) {
+            pathVariable = "";
+        }
+        Snapshot snapshot = current;
+        if (snapshot != null && snapshot.pathVariable.equals(pathVariable) && !anyChanged(snapshot)) {
+            return snapshot;
+        }
+        synchronized (this) {
+            snapshot = current;
+            if (snapshot != null && snapshot.pathVariable.equals(pathVariable) && !anyChanged(snapshot)) {
+                return snapshot;
+            }
+            Map<Path, DirListing> previous = new HashMap<>();
+            if (snapshot != null) {
+                for (DirListing listing : snapshot.dirs) {
+                    previous.put(listing.dir, listing);
+                }
+            }
+            long start = System.nanoTime();
+            int listed = 0;
+            List<DirListing> dirs = new ArrayList<>();
+            for (Path dir : parsePath(pathVariable)) {
+                long mtime = mtime(dir);
+                DirListing listing = previous.get(dir);
+                if (listing == null || listing.mtime != mtime) {
+                    // Missing directories are kept with mtime -1, so creating one is noticed
+                    listing = new DirListing(dir, mtime, mtime < 0 ? Collections.emptySet() : list(dir));
+                    listed += mtime < 0 ? 0 : 1;
+                }
+                dirs.add(listing);
+            }
+            snapshot = new Snapshot(pathVariable, Collections.unmodifiableList(dirs));
+            current = snapshot;
+            LOG.info("PATH index: " + snapshot.size() + " names in " + dirs.size() + " directories ("
+                    + listed + " listed) in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+            return snapshot;
+        }
+    }
+
+    private static boolean anyChanged(Snapshot snapshot) {
+        for (DirListing listing : snapshot.dirs) {
+            if (mtime(listing.dir) != listing.mtime) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Path> parsePath(String pathVariable) {
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (String entry : pathVariable.split(File.pathSeparator)) {
+            String trimmed = entry.trim();
+            if (WINDOWS && trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+                trimmed = trimmed.substring(1, trimmed.length() - 1);
+            }
+            // Relative entries depend on the working directory; never resolve tools through them
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            try {
+                Path dir = Paths.get(trimmed);
+                if (dir.isAbsolute()) {
+                    dirs.add(dir.normalize());
+                }
+            } catch (InvalidPathException e) {
+                LOG.debug("Skipping invalid PATH entry: " + trimmed);
+            }
+        }
+        return new ArrayList<>(dirs);
+    }
+
+    private static long mtime(Path dir) {
+        try {
+            return Files.getLastModifiedTime(dir).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static Set<String> list(Path dir) {
+        Set<String> names = new HashSet<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (WINDOWS) {
+                    String stripped = stripPathExt(name);
+                    if (stripped == null) {
+                        continue;
+                    }
+                    names.add(stripped.toLowerCase(Locale.ROOT));
+                } else {
+                    names.add(name);
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            LOG.debug("Cannot list PATH directory " + dir, e);
+        }
+        return names;
+    }
+
+    private static String key(String command) {
+        if (!WINDOWS) {
+            return command;
+        }
+        String stripped = stripPathExt(command);
+        return (stripped != null ? stripped : command).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Windows: name without its PATHEXT extension, null if it has none of them
+     */
+    @Nullable
+    private static String stripPathExt(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        String ext = name.substring(dot).toLowerCase(Locale.ROOT);
+        return PATH_EXTENSIONS.contains(ext) ? name.substring(0, dot) : null;
+    }
+
+    private static List<String> pathExtensions() {
+        String pathExt = EnvironmentUtil.getValue("PATHEXT");
+        List<String> extensions = new ArrayList<>();
+        for (String ext : (pathExt != null ? pathExt : ".COM;.EXE;.BAT;.CMD").split(";")) {
+            if (!ext.isEmpty()) {
+                extensions.add(ext.toLowerCase(Locale.ROOT));
+            }
+        }
+        return extensions;
+    }
+
+    @Nullable
+    private static File findFile(Path dir, String command) {
+        if (!WINDOWS) {
+            return dir.resolve(command).toFile();
+        }
+        if (stripPathExt(command) != null) {
+            return dir.resolve(command).toFile();
+        }
+        for (String ext : PATH_EXTENSIONS) {
+            File file = dir.resolve(command + ext).toFile();
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        return null;
+    }
+}
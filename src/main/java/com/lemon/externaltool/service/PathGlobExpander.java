@@ -0,0 +1,222 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Path Glob Expander
+ * 展开注册表路径中的通配符：*、?、[...]、{a,b} 匹配单层目录，** 匹配零到多层
+ *
+ * Only the directories a pattern segment needs are listed, one {@link DirectoryStream} each;
+ * {@code **} descends at most {@value #MAX_RECURSIVE_DEPTH} levels and never walks a whole tree.
+ * Listings are cached for the lifetime of the expander, so definitions that share a root
+ * (e.g. several tools under /opt or the Toolbox apps directory) list it once per scan.
+ * Matches are returned newest version first.
+ */
+final class PathGlobExpander {
+
+    private static final Logger LOG = Logger.getInstance(PathGlobExpander.class);
+
+    private static final int MAX_RECURSIVE_DEPTH = 4;
+    // Larger directories are truncated; a registry pattern should never need them
+    private static final int MAX_ENTRIES_PER_DIRECTORY = 2000;
+
+    /**
+     * Newest version first: digit runs compare as numbers ("idea-2024.10" after "idea-2024.9")
+     */
+    static final Comparator<String> NEWEST_FIRST = PathGlobExpander::compareVersions;
+
+    private final Map<Path, List<Path>> listings = new ConcurrentHashMap<>();
+    private final Map<String, PathMatcher> matchers = new ConcurrentHashMap<>();
+
+    static boolean isPattern(@NotNull String path) {
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 展开路径模式为已存在的路径，按版本从新到旧排序；非模式路径原样返回
+     */
+    @NotNull
+    List<String> expand(@NotNull String pattern) {
+        if (!isPattern(pattern)) {
+            return Collections.singletonList(pattern);
+        }
+        Path path;
+        try {
+            path = Paths.get(globFree(pattern));
+        } catch (InvalidPathException e) {
+            LOG.debug("Invalid path pattern: " + pattern);
+            return Collections.emptyList();
+        }
+        if (path.getRoot() == null) {
+            return Collections.emptyList();
+        }
+        List<String> segments = segments(pattern);
+        // Drop the segments that make up the root ("C:", UNC server and share)
+        segments = segments.subList(Math.min(segments.size(), segments(path.getRoot().toString()).size()),
+                segments.size());
+        Set<Path> current = new LinkedHashSet<>();
+        current.add(path.getRoot());
+        for (int i = 0; i < segments.size() && !current.isEmpty(); i++) {
+            String segment = segments.get(i);
+            Set<Path> next = new LinkedHashSet<>();
+            for (Path dir : current) {
+                if ("**".equals(segment)) {
+                    collectDescendants(dir, 0, next);
+                } else if (isPattern(segment)) {
+                    PathMatcher matcher = matcher(segment);
+                    for (Path child : list(dir)) {
+                        if (matcher.matches(child.getFileName())) {
+                            next.add(child);
+                        }
+                    }
+                } else if (current.size() == 1) {
+                    // Literal segment on a single path: existence is checked by the listing of the
+                    // next pattern segment or by validation of the final candidate
+                    next.add(dir.resolve(segment));
+                } else {
+                    // After a fan-out, keep only the directories that actually contain it
+                    Path child = dir.resolve(segment);
+                    if (list(dir).contains(child)) {
+                        next.add(child);
+                    }
+                }
+            }
+            current = next;
+        }
+        List<String> matches = new ArrayList<>(current.size());
+        for (Path match : current) {
+            matches.add(match.toString());
+        }
+        matches.sort(NEWEST_FIRST);
+        return matches;
+    }
+
+    /**
+     * The directory itself and its subdirectories down to the depth limit
+     */
+    private void collectDescendants(Path dir, int depth, Set<Path> out) {
+        out.add(dir);
+        if (depth >= MAX_RECURSIVE_DEPTH) {
+            return;
+        }
+        for (Path child : list(dir)) {
+            // Files list as empty; only directories contribute further levels
+            if (Files.isDirectory(child)) {
+                collectDescendants(child, depth + 1, out);
+            }
+        }
+    }
+
+    private List<Path> list(Path dir) {
+        List<Path> children = listings.get(dir);
+        if (children != null) {
+            return children;
+        }
+        children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                if (children.size() >= MAX_ENTRIES_PER_DIRECTORY) {
+                    LOG.info("Listing of " + dir + " truncated at " + MAX_ENTRIES_PER_DIRECTORY + " entries");
+                    break;
+                }
+                children.add(child);
+            }
+        } catch (IOException | SecurityException e) {
+            // Missing or unreadable: no matches below it
+        }
+        children = Collections.unmodifiableList(children);
+        List<Path> existing = listings.putIfAbsent(dir, children);
+        return existing != null ? existing : children;
+    }
+
+    private PathMatcher matcher(String segment) {
+        return matchers.computeIfAbsent(segment, s -> FileSystems.getDefault().getPathMatcher("glob:" + s));
+    }
+
+    /**
+     * Non-empty path segments; separators inside [...] and {...} are not expected
+     */
+    private static List<String> segments(String pattern) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : pattern.split("[/\\\\]+")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Pattern with glob characters replaced, only to parse its root
+     */
+    private static String globFree(String pattern) {
+        return pattern.replaceAll("[*?\\[\\]{}]", "_");
+    }
+
+    private static int compareVersions(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                int endA = i;
+                while (endA < a.length() && Character.isDigit(a.charAt(endA))) {
+                    endA++;
+                }
+                int endB = j;
+                while (endB < b.length() && Character.isDigit(b.charAt(endB))) {
+                    endB++;
+                }
+                String na = stripLeadingZeros(a.substring(i, endA));
+                String nb = stripLeadingZeros(b.substring(j, endB));
+                // Longer number is larger; equal length compares digit by digit
+                int cmp = na.length() != nb.length() ? Integer.compare(na.length(), nb.length()) : na.compareTo(nb);
+                if (cmp != 0) {
+                    return -cmp;
+                }
+                i = endA;
+                j = endB;
+            } else {
+                if (ca != cb) {
+                    return -Character.compare(ca, cb);
+                }
+                i++;
+                j++;
+            }
+        }
+        return -Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static String stripLeadingZeros(String digits) {
+        int k = 0;
+        while (k < digits.length() - 1 && digits.charAt(k) == '0') {
+            k++;
+        }
+        return digits.substring(k);
+    }
+}
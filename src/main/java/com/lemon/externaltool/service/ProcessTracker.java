@@ -0,0 +1,210 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.lemon.externaltool.core.LaunchedProcess;
+import com.lemon.externaltool.model.ExternalTool;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Process Tracker
+ * 记录当前项目启动的所有外部进程
+ *
+ * Every child process is tracked with its tool, files, PID and start time; exit code and
+ * duration are filled in when the process exits. Single-instance tools use the
+ * tracker to skip files that are already open. When the project closes, processes of tools
+ * marked "terminate on project close" are destroyed and all others are detached.
+ */
+@Service(Service.Level.PROJECT)
+public final class ProcessTracker implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(ProcessTracker.class);
+
+    // Finished processes kept for inspection
+    private static final int HISTORY_SIZE = 100;
+
+    private final Map<Long, TrackedProcess> running = new ConcurrentHashMap<>();
+    private final Deque<TrackedProcess> history = new ArrayDeque<>();
+    private final List<Consumer<TrackedProcess>> exitListeners = new CopyOnWriteArrayList<>();
+
+    public static ProcessTracker getInstance(@NotNull Project project) {
+        return project.getService(ProcessTracker.class);
+    }
+
+    /**
+     * A child process started by a tool
+     */
+    public static final class TrackedProcess {
+        private final String toolId;
+        private final String toolName;
+        private final boolean terminateOnProjectClose;
+        private final List<String> files;
+        private final LaunchedProcess process;
+        private final long startTimeMillis;
+        private volatile Integer exitCode;
+        private volatile long durationMillis = -1;
+
+        TrackedProcess(ExternalTool tool, List<String> files, LaunchedProcess process) {
+            this.toolId = tool.getId();
+            this.toolName = tool.getName();
+            this.terminateOnProjectClose = tool.isTerminateOnProjectClose();
+            this.files = Collections.unmodifiableList(new ArrayList<>(files));
+            this.process = process;
+            this.startTimeMillis = System.currentTimeMillis();
+        }
+
+        public String getToolId() {
+            return toolId;
+        }
+
+        public String getToolName() {
+            return toolName;
+        }
+
+        @NotNull
+        public List<String> getFiles() {
+            return files;
+        }
+
+        public long getPid() {
+            return process.pid();
+        }
+
+        @NotNull
+        public LaunchedProcess getProcess() {
+            return process;
+        }
+
+        public long getStartTimeMillis() {
+            return startTimeMillis;
+        }
+
+        /**
+         * 退出码，进程仍在运行时为 null
+         */
+        @Nullable
+        public Integer getExitCode() {
+            return exitCode;
+        }
+
+        /**
+         * 运行时长（毫秒），进程仍在运行时为 -1
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public boolean isRunning() {
+            return exitCode == null;
+        }
+
+        @Override
+        public String toString() {
+            return toolName + " (PID " + getPid() + ", " + files.size() + " files"
+                    + (exitCode != null ? ", exit " + exitCode + " after " + durationMillis + "ms" : ", running") + ")";
+        }
+    }
+
+    /**
+     * 记录新启动的进程
+     */
+    @NotNull
+    public TrackedProcess track(@NotNull ExternalTool tool, @NotNull List<String> files,
+            @NotNull LaunchedProcess process) {
+        TrackedProcess tracked = new TrackedProcess(tool, files, process);
+        running.put(tracked.getPid(), tracked);
+        process.onExit().thenAccept(exitCode -> finished(tracked, exitCode));
+        return tracked;
+    }
+
+    private void finished(TrackedProcess tracked, int exitCode) {
+        tracked.durationMillis = System.currentTimeMillis() - tracked.startTimeMillis;
+        tracked.exitCode = exitCode;
+        running.remove(tracked.getPid(), tracked);
+        synchronized (history) {
+            if (history.size() >= HISTORY_SIZE) {
+                history.removeFirst();
+            }
+            history.addLast(tracked);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Process finished: " + tracked);
+        }
+        for (Consumer<TrackedProcess> listener : exitListeners) {
+            listener.accept(tracked);
+        }
+    }
+
+    /**
+     * 进程退出时回调（在进程监视线程上调用）
+     */
+    public void addExitListener(@NotNull Consumer<TrackedProcess> listener) {
+        exitListeners.add(listener);
+    }
+
+    /**
+     * 该工具仍在运行的进程数
+     */
+    public int countRunning(@NotNull String toolId) {
+        int count = 0;
+        for (TrackedProcess tracked : running.values()) {
+            if (tracked.toolId.equals(toolId) && tracked.process.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 查找该工具中仍在运行、且打开了指定文件的进程
+     */
+    @Nullable
+    public TrackedProcess findRunning(@NotNull String toolId, @NotNull String filePath) {
+        for (TrackedProcess tracked : running.values()) {
+            if (tracked.toolId.equals(toolId) && tracked.files.contains(filePath) && tracked.process.isAlive()) {
+                return tracked;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    public List<TrackedProcess> getRunning() {
+        return new ArrayList<>(running.values());
+    }
+
+    /**
+     * 最近结束的进程，按结束时间从旧到新排列
+     */
+    @NotNull
+    public List<TrackedProcess> getHistory() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        // Project is closing: terminate opted-in children, detach the rest
+        for (TrackedProcess tracked : running.values()) {
+            if (tracked.terminateOnProjectClose && tracked.process.isAlive()) {
+                LOG.info("Terminating " + tracked + " on project close");
+                tracked.process.destroy();
+            }
+        }
+        running.clear();
+    }
+}
@@ -1,51 +1,147 @@
 package com.lemon.externaltool.service;
 
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.lemon.externaltool.core.MacroResolver;
 import com.lemon.externaltool.model.DetectedTool;
 import com.lemon.externaltool.model.Platform;
 import com.lemon.externaltool.model.ToolDefinition;
 import com.lemon.externaltool.model.ToolRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Tool detection service
+ *
+ * Candidate paths of all definitions are checked in parallel on a bounded pool. Each check has
+ * {@value #PATH_TIMEOUT_MS} ms from the moment it starts running, not from when it was queued, so
+ * checks waiting behind hung ones are not failed with them. A path that starts and does not answer
+ * in time marks its mount (the first two path segments) as stalled, so the other candidates on a
+ * dead NFS or automount share are skipped instead of each waiting out the timeout. The whole scan
+ * is limited by a time budget.
+ * Bare command names are resolved against {@link PathExecutableIndex}, one lookup each.
+ * Paths containing glob characters ({@code *}, {@code ?}, {@code [...]}, {@code {a,b}}, {@code **})
+ * are expanded by {@link PathGlobExpander}; its directory listings are shared by all definitions
+ * of a scan, and the newest matching version is preferred.
  */
 public class ToolDetectionService {
     private static final Logger LOG = Logger.getInstance(ToolDetectionService.class);
 
+    // Checks mostly wait on the filesystem; a hung stat occupies a thread until the OS gives up
+    private static final ExecutorService DETECTION_EXECUTOR =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("External Tool Detection", 16);
+    private static final long PATH_TIMEOUT_MS = 2000;
+    // A pattern lists a few directories before its candidates are checked
+    private static final long PATTERN_TIMEOUT_MS = 5000;
+    public static final long DEFAULT_BUDGET_MS = 15_000;
+
     /**
      * Detect all available tools from registry
      */
     public List<DetectedTool> detectAvailableTools() {
-        List<DetectedTool> detected = new ArrayList<>();
-
         try {
             ToolRegistry registry = ToolRegistryLoader.loadDefault();
             LOG.info("Loaded tool registry with " + registry.getTools().size() + " tools");
+            return detectTools(registry.getTools(), null, () -> false, DEFAULT_BUDGET_MS);
+        } catch (Exception e) {
+            LOG.error("Failed to detect tools", e);
+            return new ArrayList<>();
+        }
+    }
 
-            for (ToolDefinition definition : registry.getTools()) {
-                DetectedTool tool = detectTool(definition);
-                if (tool != null) {
-                    detected.add(tool);
-                    if (tool.isAvailable()) {
-                        LOG.info("Detected: " + tool.getName() + " at " + tool.getDetectedPath());
+    /**
+     * Detect the given definitions in parallel, blocking until all are done, the budget is spent
+     * or the scan is cancelled.
+     *
+     * @param onResult  called once per definition as soon as it is resolved, from worker threads
+     *                  and possibly concurrently; not called for definitions left unresolved
+     * @param cancelled polled while waiting
+     * @return one entry per definition in registry order; definitions not resolved in time are
+     * reported as unavailable
+     */
+    public List<DetectedTool> detectTools(@NotNull List<ToolDefinition> definitions,
+            @Nullable Consumer<DetectedTool> onResult, @NotNull BooleanSupplier cancelled, long budgetMs) {
+        long start = System.nanoTime();
+        DetectionCache cache = DetectionCache.getInstance();
+        cache.open(ToolRegistryLoader.loadDefault().getVersion());
+        Scan scan = new Scan(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs),
+                needsPathIndex(definitions) ? PathExecutableIndex.getInstance().snapshot() : null);
+        List<CompletableFuture<DetectedTool>> results = new ArrayList<>(definitions.size());
+        for (ToolDefinition definition : definitions) {
+            CompletableFuture<DetectedTool> result = detectToolAsync(definition, scan);
+            if (onResult != null) {
+                result.thenAccept(tool -> {
+                    if (!scan.isStopped()) {
+                        onResult.accept(tool);
                     }
-                }
+                });
             }
+            results.add(result);
+        }
 
-            LOG.info("Detection complete: " + detected.size() + " tools processed, " +
-                    detected.stream().filter(DetectedTool::isAvailable).count() + " available");
-
-        } catch (Exception e) {
-            LOG.error("Failed to detect tools", e);
+        CompletableFuture<Void> all = CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]));
+        try {
+            while (!all.isDone() && !cancelled.getAsBoolean() && System.nanoTime() < scan.deadline) {
+                try {
+                    all.get(Math.min(100, TimeUnit.NANOSECONDS.toMillis(scan.deadline - System.nanoTime()) + 1),
+                            TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ignored) {
+                    // Poll cancellation and the budget
+                } catch (ExecutionException ignored) {
+                    // Checks never complete exceptionally
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            scan.stop();
+            cache.save();
         }
 
+        List<DetectedTool> detected = new ArrayList<>(definitions.size());
+        int unresolved = 0;
+        for (int i = 0; i < definitions.size(); i++) {
+            DetectedTool tool = results.get(i).getNow(null);
+            if (tool == null) {
+                unresolved++;
+                results.get(i).cancel(false);
+                tool = new DetectedTool(definitions.get(i), null, false);
+            } else if (tool.isAvailable() && LOG.isDebugEnabled()) {
+                LOG.debug("Detected: " + tool.getName() + " at " + tool.getDetectedPath());
+            }
+            detected.add(tool);
+        }
+        LOG.info("Detection complete in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms: "
+                + detected.size() + " tools processed, "
+                + detected.stream().filter(DetectedTool::isAvailable).count() + " available"
+                + (unresolved > 0 ? ", " + unresolved + " not resolved in time" : "")
+                + ", " + scan.cacheHits.get() + " paths from cache"
+                + (scan.stalledMounts.isEmpty() ? "" : ", stalled mounts " + scan.stalledMounts));
         return detected;
     }
 
@@ -55,10 +151,27 @@ public class ToolDetectionService {
     public DetectedTool detectTool(ToolDefinition definition) {
         List<String> paths = definition.getPathsForCurrentPlatform();
 
+        PathGlobExpander globs = new PathGlobExpander();
         for (String pathTemplate : paths) {
-            String path = expandPath(pathTemplate);
-            if (validateToolPath(path)) {
-                return new DetectedTool(definition, path, true);
+            String expanded = expandPath(pathTemplate);
+            if (expanded == null || expanded.isEmpty()) {
+                continue;
+            }
+            for (String path : globs.expand(expanded)) {
+                if (validateToolPath(path)) {
+                    return new DetectedTool(definition, path, true);
+                }
+            }
+        }
+
+        List<String> commands = definition.getCommands();
+        if (commands != null && !commands.isEmpty()) {
+            PathExecutableIndex.Snapshot pathIndex = PathExecutableIndex.getInstance().snapshot();
+            for (String command : commands) {
+                String path = pathIndex.resolve(command);
+                if (path != null) {
+                    return new DetectedTool(definition, path, true);
+                }
             }
         }
 
@@ -66,8 +179,238 @@ public class ToolDetectionService {
         return new DetectedTool(definition, null, false);
     }
 
+    /**
+     * State shared by the checks of one scan
+     */
+    private static final class Scan {
+        final long deadline;
+        // Null when no definition lists commands
+        final PathExecutableIndex.Snapshot pathIndex;
+        final Set<String> stalledMounts = ConcurrentHashMap.newKeySet();
+        // Directory signatures read during this scan, shared by the candidates in them
+        final Map<Path, DetectionCache.Signature> directories = new ConcurrentHashMap<>();
+        final AtomicInteger cacheHits = new AtomicInteger();
+        // Directory listings for path patterns, shared by all definitions
+        final PathGlobExpander globs = new PathGlobExpander();
+        volatile boolean stopped;
+
+        Scan(long deadline, @Nullable PathExecutableIndex.Snapshot pathIndex) {
+            this.deadline = deadline;
+            this.pathIndex = pathIndex;
+        }
+
+        DetectionCache.Signature directory(Path dir) {
+            DetectionCache.Signature signature = directories.get(dir);
+            if (signature == null) {
+                // Not computeIfAbsent: a hung stat must not block other directories' bins
+                signature = DetectionCache.Signature.of(dir);
+                directories.putIfAbsent(dir, signature);
+            }
+            return signature;
+        }
+
+        boolean isStopped() {
+            return stopped || System.nanoTime() >= deadline;
+        }
+
+        void stop() {
+            stopped = true;
+        }
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static boolean needsPathIndex(List<ToolDefinition> definitions) {
+        for (ToolDefinition definition : definitions) {
+            if (definition.getCommands() != null && !definition.getCommands().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * All candidates are checked at once; the first one in registry order that exists wins.
+     * Command names come after the platform paths and are resolved against the PATH index.
+     */
+    private CompletableFuture<DetectedTool> detectToolAsync(ToolDefinition definition, Scan scan) {
+        List<String> templates = definition.getPathsForCurrentPlatform();
+        List<String> commands = definition.getCommands() != null ? definition.getCommands() : new ArrayList<>();
+        if (templates.isEmpty() && commands.isEmpty()) {
+            return CompletableFuture.completedFuture(new DetectedTool(definition, null, false));
+        }
+        List<CompletableFuture<String>> checks = new ArrayList<>(templates.size() + commands.size());
+        for (String template : templates) {
+            String path = expandPath(template);
+            checks.add(path != null && PathGlobExpander.isPattern(path) ? checkPattern(path, scan) : checkPath(path, scan));
+        }
+        for (String command : commands) {
+            checks.add(checkCommand(command, scan));
+        }
+        return CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            for (CompletableFuture<String> check : checks) {
+                String path = check.join();
+                if (path != null) {
+                    DetectionCache.Entry cached = DetectionCache.getInstance().get(path);
+                    return cached != null
+                            ? new DetectedTool(definition, path, true, toDateTime(cached.checkedAtMillis))
+                            : new DetectedTool(definition, path, true);
+                }
+            }
+            return new DetectedTool(definition, null, false);
+        });
+    }
+
+    /**
+     * 命令名在索引中为 O(1) 查找，只对命中的文件做一次检查
+     */
+    private CompletableFuture<String> checkCommand(String command, Scan scan) {
+        if (scan.pathIndex == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return runTimed(() -> scan.isStopped() ? null : scan.pathIndex.resolve(command), PATH_TIMEOUT_MS, null);
+    }
+
+    /**
+     * @return the path if it is a valid tool, null otherwise
+     */
+    private CompletableFuture<String> checkPath(String path, Scan scan) {
+        if (path == null || path.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String mount = mountOf(path);
+        return runTimed(() -> {
+            // Queued checks are dropped once the scan is over or their mount stalled
+            if (scan.isStopped() || (mount != null && scan.stalledMounts.contains(mount))) {
+                return null;
+            }
+            return checkCached(path, scan) ? path : null;
+        }, PATH_TIMEOUT_MS, () -> {
+            if (mount != null && scan.stalledMounts.add(mount)) {
+                LOG.warn("Path check timed out, skipping other candidates under " + mount + ": " + path);
+            }
+        });
+    }
+
+    /**
+     * Expand the pattern and return the newest match that is a valid tool
+     */
+    private CompletableFuture<String> checkPattern(String pattern, Scan scan) {
+        String mount = mountOf(pattern);
+        if (mount != null && PathGlobExpander.isPattern(mount)) {
+            // The pattern starts right below the root; there is no single mount to blame
+            mount = null;
+        }
+        String stallKey = mount;
+        return runTimed(() -> {
+            if (scan.isStopped() || (stallKey != null && scan.stalledMounts.contains(stallKey))) {
+                return null;
+            }
+            for (String path : scan.globs.expand(pattern)) {
+                if (scan.isStopped()) {
+                    return null;
+                }
+                if (checkCached(path, scan)) {
+                    return path;
+                }
+            }
+            return null;
+        }, PATTERN_TIMEOUT_MS, () -> {
+            if (stallKey != null && scan.stalledMounts.add(stallKey)) {
+                LOG.warn("Path pattern timed out, skipping other candidates under " + stallKey + ": " + pattern);
+            }
+        });
+    }
+
+    /**
+     * Run a check on the detection pool. The timeout starts when the check starts running: with
+     * every candidate queued up front, a clock started at submission would also fail the checks
+     * that were only waiting behind hung ones.
+     *
+     * @param onHang called only for a check that started and did not finish within the timeout
+     * @return the check's result, or null if it hung or failed
+     */
+    private static CompletableFuture<String> runTimed(Supplier<String> check, long timeoutMs,
+            @Nullable Runnable onHang) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        DETECTION_EXECUTOR.execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            result.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+            try {
+                result.complete(check.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.handle((path, failure) -> {
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (cause instanceof TimeoutException) {
+                if (onHang != null) {
+                    onHang.run();
+                }
+            } else if (cause != null) {
+                LOG.debug("Detection check failed", cause);
+            }
+            return cause == null ? path : null;
+        });
+    }
+
+    /**
+     * Reuse the cached result while the candidate's stat signature is unchanged; a candidate
+     * that was missing only costs a (shared) stat of its directory
+     */
+    private boolean checkCached(String path, Scan scan) {
+        Path candidate;
+        try {
+            candidate = Paths.get(path);
+        } catch (InvalidPathException e) {
+            return false;
+        }
+        Path dir = candidate.getParent();
+        DetectionCache cache = DetectionCache.getInstance();
+        DetectionCache.Entry cached = cache.get(path);
+        if (cached != null) {
+            boolean unchanged = cached.self.isMissing() && dir != null
+                    ? scan.directory(dir).equals(cached.parent)
+                    : DetectionCache.Signature.of(candidate).equals(cached.self);
+            if (unchanged) {
+                scan.cacheHits.incrementAndGet();
+                return cached.valid;
+            }
+        }
+        boolean valid = validateToolPath(path);
+        cache.put(path, new DetectionCache.Entry(DetectionCache.Signature.of(candidate),
+                dir != null ? scan.directory(dir) : DetectionCache.Signature.MISSING, valid,
+                System.currentTimeMillis()));
+        return valid;
+    }
+
+    /**
+     * First two segments of an absolute path, e.g. /mnt/share or C:\Program Files
+     */
+    @Nullable
+    private static String mountOf(String path) {
+        try {
+            Path p = Paths.get(path);
+            if (p.getRoot() == null || p.getNameCount() < 2) {
+                return null;
+            }
+            return p.getRoot().resolve(p.subpath(0, 2)).toString();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
     /**
      * Validate if a tool path exists and is accessible
+     *
+     * A plain stat: candidates are mostly paths that will never be launched, so they do not go
+     * through {@link ExecutableValidationCache}, which watches the parent directory of every path
+     * it caches. Repeated scans are served by {@link DetectionCache} instead.
      */
     public boolean validateToolPath(String path) {
         if (path == null || path.isEmpty()) {
@@ -75,15 +418,21 @@ public class ToolDetectionService {
         }
 
         try {
-            Path filePath = Paths.get(path);
+            Path candidate = Paths.get(path);
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(candidate, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return false;
+            }
 
             // For .app bundles on Mac, check if directory exists
             if (Platform.current() == Platform.MAC && path.endsWith(".app")) {
-                return Files.exists(filePath) && Files.isDirectory(filePath);
+                return attributes.isDirectory();
             }
 
             // For executables, check if file exists
-            return Files.exists(filePath) && (Files.isDirectory(filePath) || Files.isExecutable(filePath));
+            return attributes.isDirectory() || (attributes.isRegularFile() && Files.isExecutable(candidate));
 
         } catch (Exception e) {
             LOG.debug("Path validation failed for: " + path, e);
@@ -92,28 +441,13 @@ public class ToolDetectionService {
     }
 
     /**
-     * Expand path template (e.g., replace {user} with actual username)
+     * Expand path template (e.g., replace {user}, {home} or {env:VAR})
      */
     private String expandPath(String pathTemplate) {
         if (pathTemplate == null) {
             return null;
         }
-
-        String expanded = pathTemplate;
-
-        // Replace {user} with actual username
-        if (expanded.contains("{user}")) {
-            String username = System.getProperty("user.name");
-            expanded = expanded.replace("{user}", username);
-        }
-
-        // Replace {home} with user home directory
-        if (expanded.contains("{home}")) {
-            String home = System.getProperty("user.home");
-            expanded = expanded.replace("{home}", home);
-        }
-
-        return expanded;
+        return MacroResolver.expandText(pathTemplate);
     }
 
     /**
@@ -5,15 +5,49 @@ import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.lemon.externaltool.core.CapturedOutput;
+import com.lemon.externaltool.core.CommandBatcher;
+import com.lemon.externaltool.core.CommandTemplate;
+import com.lemon.externaltool.core.InstanceDetector;
+import com.lemon.externaltool.core.LaunchPolicy;
+import com.lemon.externaltool.core.LaunchedProcess;
+import com.lemon.externaltool.core.MacroContext;
 import com.lemon.externaltool.core.MacroResolver;
+import com.lemon.externaltool.core.ProcessLauncher;
+import com.lemon.externaltool.core.StdinContent;
+import com.lemon.externaltool.core.TemplateSyntaxException;
 import com.lemon.externaltool.model.ExternalTool;
+import com.lemon.externaltool.ui.ToolOutputConsole;
+import com.lemon.externaltool.util.FileTypeUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tool Execution Service
@@ -23,12 +57,21 @@ import java.util.List;
 public final class ToolExecutionService {
 
     private static final Logger LOG = Logger.getInstance(ToolExecutionService.class);
+    // Shared by all projects; launches are short and mostly wait on the filesystem
+    private static final ExecutorService LAUNCH_EXECUTOR =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("External Tool Launcher", 4);
+    // A crash exit within this time after start counts as a failed launch
+    private static final long CRASH_WINDOW_MS = 3000;
+    // How long a handoff client may take to report whether the running instance took the file
+    private static final long HANDOFF_TIMEOUT_MS = 3000;
     private final Project project;
     private final MacroResolver macroResolver;
+    private final CommandBatcher commandBatcher;
 
     public ToolExecutionService(Project project) {
         this.project = project;
         this.macroResolver = new MacroResolver();
+        this.commandBatcher = new CommandBatcher(macroResolver);
     }
 
     public static ToolExecutionService getInstance(Project project) {
@@ -38,15 +81,644 @@ public final class ToolExecutionService {
     /**
      * 执行工具打开文件
      */
-    public void execute(@NotNull ExternalTool tool, @NotNull String filePath) {
+    public CompletableFuture<LaunchResult> execute(@NotNull ExternalTool tool, @NotNull String filePath) {
+        return execute(tool, filePath, captureContext(tool, null));
+    }
+
+    /**
+     * 执行工具打开文件
+     *
+     * @param context project/editor state for the template's macros, captured on the EDT
+     */
+    public CompletableFuture<LaunchResult> execute(@NotNull ExternalTool tool, @NotNull String filePath,
+            @NotNull MacroContext context) {
+        return execute(tool, Collections.singletonList(filePath), context);
+    }
+
+    /**
+     * 执行工具打开多个文件（多选）
+     * Files are merged into as few process starts as the tool's multi-file mode allows.
+     */
+    public CompletableFuture<LaunchResult> execute(@NotNull ExternalTool tool, @NotNull List<String> filePaths) {
+        return execute(tool, filePaths, captureContext(tool, null));
+    }
+
+    /**
+     * 异步启动流水线：validate -> resolve argv -> spawn -> observe
+     *
+     * All stages run on a background executor, so filesystem checks and process creation never
+     * block the EDT. The returned future always completes normally; failures are reported in the
+     * {@link LaunchResult} and as a notification.
+     */
+    public CompletableFuture<LaunchResult> execute(@NotNull ExternalTool tool, @NotNull List<String> filePaths,
+            @NotNull MacroContext context) {
+        Launch launch = new Launch(tool, new ArrayList<>(filePaths), context);
+        if (!ToolHealthService.getInstance().allowsLaunch(tool)) {
+            // Decided from memory only: a broken tool never costs a disk check or a spawn
+            ExternalTool fallback = findFallback(tool, filePaths);
+            if (fallback != null) {
+                LOG.info(tool.getName() + " is failing, falling through to " + fallback.getName());
+                notifyInfo("Using " + fallback.getName(), tool.getName() + " is failing ("
+                        + failureReason(tool) + "), opening with " + fallback.getName() + " instead");
+                // Same macro context: editor state cannot be captured again here
+                return execute(fallback, filePaths, context);
+            }
+            return CompletableFuture.completedFuture(circuitOpen(launch));
+        }
+        return CompletableFuture.runAsync(() -> validateStage(launch), LAUNCH_EXECUTOR)
+                .thenRun(() -> resolveStage(launch))
+                .thenCompose(ignored -> spawnStage(launch))
+                .thenRun(() -> observeStage(launch))
+                .handle((ignored, failure) -> complete(launch, failure));
+    }
+
+    /**
+     * 过滤模式：把文档或选区写入工具的标准输入，用其标准输出替换原文本
+     * validate -> resolve argv -> run filter -> diff -> apply
+     *
+     * The result is diffed line by line off the EDT and applied as one undoable command that only
+     * touches changed lines. Nothing is applied if the tool fails or the document was edited
+     * while it ran.
+     */
+    public CompletableFuture<LaunchResult> filter(@NotNull ExternalTool tool, @NotNull FilterTarget target,
+            @NotNull MacroContext context) {
+        Launch launch = new Launch(tool, Collections.singletonList(target.getFilePath()), context);
+        return CompletableFuture.runAsync(() -> validateStage(launch), LAUNCH_EXECUTOR)
+                .thenCompose(ignored -> queueFilterStage(launch, target))
+                .thenApplyAsync(output -> diffStage(launch, target, output), LAUNCH_EXECUTOR)
+                .thenCompose(patch -> applyStage(launch, target, patch))
+                .handle((changes, failure) -> completeFilter(launch, target, changes, failure));
+    }
+
+    /**
+     * 单次启动在各阶段之间传递的状态
+     */
+    private static final class Launch {
+        final ExternalTool tool;
+        final List<String> files;
+        final MacroContext context;
+
+        List<CommandBatcher.Batch> batches;
+        // Handoff to a running instance planned in resolve; full launch batches are the fallback
+        boolean handoff;
+        // Stdin mode: content written to the process started for each file
+        final Map<String, StdinContent> stdin = new HashMap<>();
+        // Files already open in a single-instance tool
+        final List<String> skippedFiles = new ArrayList<>();
+        final List<LaunchedProcess> processes = new ArrayList<>();
+        // Batch of each started process, same order as processes
+        final List<CommandBatcher.Batch> started = new ArrayList<>();
+        int openedFiles;
+        // Batches cancelled while waiting in the launch queue
+        int cancelled;
+        String lastError;
+
+        // Stage timings, filled in as each stage finishes
+        long validateNanos;
+        long resolveNanos;
+        long spawnNanos;
+        long observeNanos;
+
+        Launch(ExternalTool tool, List<String> files, MacroContext context) {
+            this.tool = tool;
+            this.files = files;
+            this.context = context;
+        }
+    }
+
+    private void validateStage(Launch launch) {
+        long start = System.nanoTime();
+        try {
+            validate(launch.tool, launch.files.get(0));
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } finally {
+            launch.validateNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void resolveStage(Launch launch) {
+        long start = System.nanoTime();
+        try {
+            List<String> files = launch.files;
+            if (launch.tool.isSingleInstance()) {
+                files = skipAlreadyOpen(launch);
+            }
+            if (launch.tool.isStdinMode()) {
+                // Each file needs its own process and stdin; a running instance can't take them
+                for (String filePath : files) {
+                    launch.stdin.put(filePath, readStdin(filePath));
+                }
+            }
+            CommandTemplate handoffTemplate = launch.tool.isStdinMode() ? null : handoffTemplate(launch.tool);
+            launch.handoff = handoffTemplate != null;
+            launch.batches = planBatches(launch.tool,
+                    launch.handoff ? handoffTemplate : launch.tool.getCompiledTemplate(), files, launch.context);
+        } catch (IOException | TemplateSyntaxException e) {
+            throw new CompletionException(e);
+        } finally {
+            launch.resolveNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * 生成启动批次：能合并时按多文件模式合并，否则每个文件一个进程
+     */
+    private List<CommandBatcher.Batch> planBatches(ExternalTool tool, CommandTemplate template, List<String> files,
+            MacroContext context) throws IOException {
+        List<CommandBatcher.Batch> batches = files.size() > 1 && !tool.isStdinMode()
+                ? buildBatches(tool, template, files, context)
+                : new ArrayList<>();
+        if (batches.isEmpty()) {
+            for (String filePath : files) {
+                batches.add(new CommandBatcher.Batch(buildCommand(tool, template, filePath, context),
+                        Collections.singletonList(filePath), null));
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * 工具已有实例在运行且配置了交接命令时返回交接模板，否则为 null
+     */
+    @Nullable
+    private CommandTemplate handoffTemplate(ExternalTool tool) throws TemplateSyntaxException {
+        // 'open -a' already hands files to a running app bundle
+        if (!tool.hasHandoff() || isMacAppBundle(tool.getExecutablePath())) {
+            return null;
+        }
+        List<String> processes = tool.getHandoffProcesses();
+        if (processes == null || !InstanceDetector.getInstance().isAnyRunning(processes)) {
+            return null;
+        }
+        return tool.getCompiledHandoffTemplate();
+    }
+
+    /**
+     * 经由启动队列执行交接命令；失败（无法启动、非零退出）的文件改为完整启动
+     * Handoff clients take a slot of the tool like any launch, and never block a launcher thread
+     * while they wait for the running instance.
+     *
+     * @return full launch batches for the files the running instance did not take
+     */
+    private CompletableFuture<List<CommandBatcher.Batch>> handoffStage(Launch launch, int priority) {
+        LaunchQueue queue = LaunchQueue.getInstance(project);
+        List<CommandBatcher.Batch> batches = launch.batches;
+        // Null for batches cancelled while queued: neither handed over nor launched
+        Boolean[] taken = new Boolean[batches.size()];
+        List<CompletableFuture<Void>> handoffs = new ArrayList<>(batches.size());
+        for (int i = 0; i < batches.size(); i++) {
+            int index = i;
+            CommandBatcher.Batch batch = batches.get(i);
+            handoffs.add(queue.submit(launch.tool, describe(batch), priority, LAUNCH_EXECUTOR,
+                    () -> handOff(launch, batch).thenAccept(result -> taken[index] = result))
+                    .exceptionally(failure -> countCancelled(launch, batch, failure)));
+        }
+        return CompletableFuture.allOf(handoffs.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<String> fallbackFiles = new ArrayList<>();
+            for (int i = 0; i < batches.size(); i++) {
+                if (Boolean.TRUE.equals(taken[i])) {
+                    launch.openedFiles += batches.get(i).getFileCount();
+                } else if (taken[i] != null) {
+                    fallbackFiles.addAll(batches.get(i).getFiles());
+                }
+            }
+            if (fallbackFiles.isEmpty()) {
+                return Collections.emptyList();
+            }
+            try {
+                return planBatches(launch.tool, launch.tool.getCompiledTemplate(), fallbackFiles, launch.context);
+            } catch (IOException | TemplateSyntaxException e) {
+                LOG.warn("Failed to build fallback launch for tool: " + launch.tool.getName(), e);
+                launch.lastError = e.getMessage();
+                return Collections.emptyList();
+            }
+        });
+    }
+
+    /**
+     * @return completes with true when the running instance took the files
+     */
+    private CompletableFuture<Boolean> handOff(Launch launch, CommandBatcher.Batch batch) {
+        ExternalTool tool = launch.tool;
+        LaunchedProcess client;
         try {
-            validate(tool, filePath);
-            List<String> command = buildCommand(tool, filePath);
-            runProcess(command);
-            notifySuccess(tool, filePath);
-        } catch (Exception e) {
-            LOG.error("Execution failed for tool: " + tool.getName(), e);
-            notifyError(tool, e.getMessage());
+            client = ProcessLauncher.getInstance().launch(batch.getCommand());
+        } catch (IOException e) {
+            LOG.info("Handoff to running " + tool.getName() + " failed, launching instead: " + e.getMessage());
+            deleteArgFileOnExit(null, batch.getArgFile());
+            return CompletableFuture.completedFuture(false);
+        }
+        // Tracked before the queue slot is released, so a client that keeps running keeps holding it
+        ProcessTracker.getInstance(project).track(tool, batch.getFiles(), client);
+        deleteArgFileOnExit(client, batch.getArgFile());
+        // A copy: the timeout must not complete the exit future the tracker listens on
+        return client.onExit().copy().orTimeout(HANDOFF_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .handle((exitCode, failure) -> {
+                    if (failure == null) {
+                        if (exitCode == 0) {
+                            return true;
+                        }
+                        LOG.info("Handoff to running " + tool.getName() + " exited with " + exitCode
+                                + ", launching instead");
+                        return false;
+                    }
+                    // Client is still waiting on the instance (e.g. a blocking client); the file was handed
+                    // over, and the client stays tracked until it exits or the project closes
+                    LOG.info("Handoff client " + client.pid() + " of " + tool.getName() + " still running after "
+                            + HANDOFF_TIMEOUT_MS + " ms, assuming the file was handed over");
+                    return true;
+                });
+    }
+
+    /**
+     * 单实例工具：跳过已在该工具中打开的文件
+     */
+    private List<String> skipAlreadyOpen(Launch launch) {
+        ProcessTracker tracker = ProcessTracker.getInstance(project);
+        List<String> remaining = new ArrayList<>(launch.files.size());
+        for (String filePath : launch.files) {
+            ProcessTracker.TrackedProcess running = tracker.findRunning(launch.tool.getId(), filePath);
+            if (running != null) {
+                LOG.info("Skipping " + filePath + ", already open in " + running);
+                launch.skippedFiles.add(filePath);
+            } else {
+                remaining.add(filePath);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * 启动各批次；超出工具并发上限的批次进入 {@link LaunchQueue} 等待
+     * Completes once every batch has started, failed or been cancelled.
+     */
+    private CompletableFuture<Void> spawnStage(Launch launch) {
+        long start = System.nanoTime();
+        int priority = launch.files.size() == 1 ? LaunchQueue.PRIORITY_INTERACTIVE : LaunchQueue.PRIORITY_BATCH;
+        CompletableFuture<List<CommandBatcher.Batch>> batches = launch.handoff
+                ? handoffStage(launch, priority)
+                : CompletableFuture.completedFuture(launch.batches);
+        return batches.thenCompose(toSpawn -> spawnBatches(launch, toSpawn, priority))
+                .whenComplete((ignored, failure) -> launch.spawnNanos = System.nanoTime() - start);
+    }
+
+    private CompletableFuture<Void> spawnBatches(Launch launch, List<CommandBatcher.Batch> batches, int priority) {
+        LaunchQueue queue = LaunchQueue.getInstance(project);
+        List<CompletableFuture<Void>> spawned = new ArrayList<>(batches.size());
+        for (CommandBatcher.Batch batch : batches) {
+            spawned.add(queue.submit(launch.tool, describe(batch), priority, LAUNCH_EXECUTOR,
+                    () -> spawnBatch(launch, batch)).exceptionally(failure -> countCancelled(launch, batch, failure)));
+        }
+        return CompletableFuture.allOf(spawned.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * 记录在队列中被取消的批次；其他失败已由批次自己处理
+     */
+    private Void countCancelled(Launch launch, CommandBatcher.Batch batch, Throwable failure) {
+        if (failure instanceof CancellationException || failure.getCause() instanceof CancellationException) {
+            synchronized (launch) {
+                launch.cancelled++;
+                launch.lastError = launch.cancelled + (launch.cancelled == 1 ? " launch" : " launches") + " cancelled";
+            }
+            deleteArgFileOnExit(null, batch.getArgFile());
+        }
+        return null;
+    }
+
+    private CompletableFuture<Void> spawnBatch(Launch launch, CommandBatcher.Batch batch) {
+        ToolOutputConsole console = launch.tool.isShowOutput() ? openConsole(launch.tool, batch) : null;
+        try {
+            LaunchedProcess process = runProcess(batch.getCommand(),
+                    batch.getFileCount() == 1 ? launch.stdin.get(batch.getFiles().get(0)) : null, console,
+                    policyFor(launch.tool));
+            if (console != null) {
+                console.attach(process);
+            }
+            // Tracked before the queue slot is released, so the process keeps holding it
+            ProcessTracker.getInstance(project).track(launch.tool, batch.getFiles(), process);
+            synchronized (launch) {
+                launch.processes.add(process);
+                launch.started.add(batch);
+                launch.openedFiles += batch.getFileCount();
+            }
+        } catch (IOException e) {
+            LOG.warn("Execution failed for tool: " + launch.tool.getName() + ", command: " + batch.getCommand(), e);
+            synchronized (launch) {
+                launch.lastError = e.getMessage();
+            }
+            if (console != null) {
+                console.failed(String.valueOf(e.getMessage()));
+            }
+            deleteArgFileOnExit(null, batch.getArgFile());
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static String describe(CommandBatcher.Batch batch) {
+        return batch.getFileCount() == 1
+                ? new File(batch.getFiles().get(0)).getName()
+                : batch.getFileCount() + " files";
+    }
+
+    private void observeStage(Launch launch) {
+        long start = System.nanoTime();
+        for (int i = 0; i < launch.processes.size(); i++) {
+            deleteArgFileOnExit(launch.processes.get(i), launch.started.get(i).getArgFile());
+            watchForCrash(launch.tool, launch.processes.get(i));
+        }
+        launch.observeNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * 进程启动后很快因崩溃退出时记入工具健康记录
+     * Only fatal signals (Unix 128 + SIGILL/SIGABRT/SIGBUS/SIGFPE/SIGSEGV) and Windows exception
+     * codes count; ordinary non-zero exits are a tool's normal way to report problems.
+     */
+    private static void watchForCrash(ExternalTool tool, LaunchedProcess process) {
+        long startedAt = System.currentTimeMillis();
+        process.onExit().thenAccept(exitCode -> {
+            boolean crashed = exitCode < 0 || exitCode == 132 || exitCode == 134 || exitCode == 135
+                    || exitCode == 136 || exitCode == 139;
+            if (crashed && System.currentTimeMillis() - startedAt < CRASH_WINDOW_MS) {
+                ToolHealthService.getInstance().recordFailure(tool, "crashed on start (exit code " + exitCode + ")");
+            }
+        });
+    }
+
+    /**
+     * 在工具的并发上限内运行过滤；占用的名额在工具退出后释放
+     */
+    private CompletableFuture<CapturedOutput> queueFilterStage(Launch launch, FilterTarget target) {
+        CompletableFuture<CapturedOutput> output = new CompletableFuture<>();
+        LaunchQueue.getInstance(project)
+                .submit(launch.tool, new File(target.getFilePath()).getName(), LaunchQueue.PRIORITY_INTERACTIVE,
+                        LAUNCH_EXECUTOR, () -> runFilterStage(launch, target).whenComplete((captured, failure) -> {
+                            if (failure != null) {
+                                output.completeExceptionally(failure);
+                            } else {
+                                output.complete(captured);
+                            }
+                        }))
+                .exceptionally(failure -> {
+                    // Cancelled while queued, or the tool could not be started
+                    output.completeExceptionally(failure);
+                    return null;
+                });
+        return output;
+    }
+
+    private CompletableFuture<CapturedOutput> runFilterStage(Launch launch, FilterTarget target) {
+        long start = System.nanoTime();
+        List<String> command = buildCommand(launch.tool, compiledTemplate(launch.tool), target.getFilePath(),
+                launch.context);
+        launch.resolveNanos = System.nanoTime() - start;
+        try {
+            return ProcessLauncher.getInstance()
+                    .capture(command, StdinContent.ofText(target.getText(), target.getCharset()), target.getCharset(),
+                            launch.tool.getLaunchPolicy())
+                    .whenComplete((output, failure) -> launch.spawnNanos = System.nanoTime() - start);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private DocumentPatch diffStage(Launch launch, FilterTarget target, CapturedOutput output) {
+        long start = System.nanoTime();
+        if (output.getExitCode() != 0) {
+            String stderr = output.getStderr().trim();
+            throw new CompletionException(new IOException("exited with code " + output.getExitCode()
+                    + (stderr.isEmpty() ? "" : ": " + stderr.split("\n", 2)[0])));
+        }
+        String result = normalizeFilterOutput(output.getStdout(), target.getText());
+        if (result.isEmpty() && target.getText().length() > 0) {
+            // Most likely misconfigured; never wipe the document
+            throw new CompletionException(new IOException("produced no output"));
+        }
+        DocumentPatch patch = DocumentPatch.compute(target.getText(), result, target.getStartOffset());
+        launch.observeNanos = System.nanoTime() - start;
+        return patch;
+    }
+
+    private CompletableFuture<Integer> applyStage(Launch launch, FilterTarget target, DocumentPatch patch) {
+        CompletableFuture<Integer> applied = new CompletableFuture<>();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (project.isDisposed() || target.isStale()) {
+                applied.completeExceptionally(new IOException("the document was changed while the tool was running"));
+                return;
+            }
+            if (!target.getDocument().isWritable()) {
+                applied.completeExceptionally(new IOException("the document is read-only"));
+                return;
+            }
+            if (!patch.isEmpty()) {
+                WriteCommandAction.runWriteCommandAction(project, "Filter Through " + launch.tool.getName(), null,
+                        () -> patch.applyTo(target.getDocument()));
+            }
+            applied.complete(patch.size());
+        });
+        return applied;
+    }
+
+    /**
+     * 统一换行符；输入末尾没有换行时去掉工具追加的换行
+     */
+    private static String normalizeFilterOutput(String output, CharSequence input) {
+        String text = output.indexOf('\r') >= 0 ? output.replace("\r\n", "\n").replace('\r', '\n') : output;
+        if (text.endsWith("\n") && input.length() > 0 && input.charAt(input.length() - 1) != '\n') {
+            text = text.substring(0, text.length() - 1);
+        }
+        return text;
+    }
+
+    private LaunchResult completeFilter(Launch launch, FilterTarget target, @Nullable Integer changes,
+            @Nullable Throwable failure) {
+        String error = null;
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+            error = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+            LOG.warn("Filter failed for tool: " + launch.tool.getName() + ": " + error);
+        }
+        LaunchResult result = new LaunchResult(launch.tool.getName(), 1, error == null ? 1 : 0, 0,
+                Collections.emptyList(), error,
+                launch.validateNanos, launch.resolveNanos, launch.spawnNanos, launch.observeNanos);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Filter finished: " + result);
+        }
+        if (!project.isDisposed()) {
+            String what = target.isSelection() ? "Selection" : new File(target.getFilePath()).getName();
+            if (error != null) {
+                notifyError(launch.tool, error);
+            } else if (changes != null && changes == 0) {
+                notifyInfo("Filter Applied", what + ": no changes from " + launch.tool.getName());
+            } else {
+                notifyInfo("Filter Applied", what + " filtered through " + launch.tool.getName()
+                        + " (" + changes + (changes == 1 ? " change)" : " changes)"));
+            }
+        }
+        return result;
+    }
+
+    private static CommandTemplate compiledTemplate(ExternalTool tool) {
+        try {
+            return tool.getCompiledTemplate();
+        } catch (TemplateSyntaxException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 断路器打开且没有可用的后备工具：直接失败
+     */
+    private LaunchResult circuitOpen(Launch launch) {
+        ToolHealthService.Health health = ToolHealthService.getInstance().getHealth(launch.tool);
+        long retryIn = health != null
+                ? Math.max(0, TimeUnit.MILLISECONDS.toSeconds(health.getRetryAtMillis() - System.currentTimeMillis()))
+                : 0;
+        String error = "disabled after " + (health != null ? health.getConsecutiveFailures() : 0)
+                + " failed launches (" + failureReason(launch.tool) + "), retrying in " + retryIn + "s";
+        LaunchResult result = new LaunchResult(launch.tool.getName(), launch.files.size(), 0, 0,
+                Collections.emptyList(), error, 0, 0, 0, 0);
+        notifyResult(launch, result);
+        return result;
+    }
+
+    private static String failureReason(ExternalTool tool) {
+        ToolHealthService.Health health = ToolHealthService.getInstance().getHealth(tool);
+        return health != null && health.getLastError() != null ? health.getLastError() : "failing";
+    }
+
+    /**
+     * 按 sortOrder 查找同样支持这些文件、且断路器未打开的下一个工具
+     */
+    @Nullable
+    private static ExternalTool findFallback(ExternalTool failing, List<String> files) {
+        Set<String> extensions = new HashSet<>();
+        for (String file : files) {
+            extensions.add(FileTypeUtils.getFileExtension(file));
+        }
+        ToolHealthService health = ToolHealthService.getInstance();
+        ExternalTool[] candidates = ExternalToolService.getInstance().getToolIndex().lookupCommon(extensions);
+        for (ExternalTool candidate : candidates) {
+            if (!candidate.getId().equals(failing.getId()) && !candidate.isFilterMode()
+                    && health.allowsLaunch(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private LaunchResult complete(Launch launch, @Nullable Throwable failure) {
+        String error = launch.lastError;
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+            LOG.warn("Execution failed for tool: " + launch.tool.getName(), cause);
+            error = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+        }
+
+        LaunchResult result = new LaunchResult(launch.tool.getName(), launch.files.size(), launch.openedFiles,
+                launch.skippedFiles.size(), launch.processes, error, launch.validateNanos, launch.resolveNanos, launch.spawnNanos,
+                launch.observeNanos);
+        if (launch.openedFiles > 0) {
+            ToolHealthService.getInstance().recordSuccess(launch.tool);
+        } else if (error != null && launch.cancelled == 0) {
+            ToolHealthService.getInstance().recordFailure(launch.tool, error);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Launch finished: " + result);
+        }
+        notifyResult(launch, result);
+        return result;
+    }
+
+    private void notifyResult(Launch launch, LaunchResult result) {
+        if (project.isDisposed()) {
+            return;
+        }
+        int fileCount = launch.files.size() - result.getSkippedFiles();
+        if (result.getSkippedFiles() > 0) {
+            notifyInfo("Already Open", (result.getSkippedFiles() == 1
+                    ? new File(launch.skippedFiles.get(0)).getName() + " is"
+                    : result.getSkippedFiles() + " files are") + " already open in " + result.getToolName());
+        }
+        if (result.getOpenedFiles() > 0) {
+            if (fileCount == 1) {
+                // The file may have been handed off, so it is not necessarily in launch.started
+                notifySuccess(launch.tool, firstNotSkipped(launch));
+            } else {
+                notifyInfo("Tool Launched", "Opened " + result.getOpenedFiles() + " files in " + result.getToolName()
+                        + (result.getLaunches() > 1 ? " (" + result.getLaunches() + " launches)" : ""));
+            }
+        }
+        if (!result.isSuccess()) {
+            notifyError(launch.tool, fileCount == 1 || result.getOpenedFiles() == 0
+                    ? result.getError()
+                    : (fileCount - result.getOpenedFiles()) + " of " + fileCount + " files failed: " + result.getError());
+        }
+    }
+
+    private static String firstNotSkipped(Launch launch) {
+        for (String file : launch.files) {
+            if (!launch.skippedFiles.contains(file)) {
+                return file;
+            }
+        }
+        return launch.files.get(0);
+    }
+
+    /**
+     * 捕获模板所需的项目/编辑器状态（在 EDT 上调用）
+     * Editor state is only read when the tool's template references {line}, {column} or {selection}.
+     */
+    @NotNull
+    public MacroContext captureContext(@NotNull ExternalTool tool, @Nullable Editor editor) {
+        Set<String> macros;
+        try {
+            macros = tool.getCompiledTemplate().getMacros();
+        } catch (TemplateSyntaxException e) {
+            // Reported when the command is built
+            macros = Collections.emptySet();
+        }
+        return MacroContext.capture(project, editor, macros);
+    }
+
+    /**
+     * 构建批量命令；返回空列表表示需要每个文件单独启动
+     */
+    private List<CommandBatcher.Batch> buildBatches(ExternalTool tool, CommandTemplate template, List<String> filePaths,
+            MacroContext context) throws IOException {
+        String execPath = tool.getExecutablePath();
+        if (isMacAppBundle(execPath)) {
+            // 'open -a' accepts any number of files
+            List<String> head = new ArrayList<>();
+            head.add("open");
+            head.add("-a");
+            head.add(execPath);
+            return commandBatcher.buildBatches(head, filePaths);
+        }
+        return commandBatcher.buildBatches(template, execPath, filePaths, tool.getMultiFileMode(), context);
+    }
+
+    private void deleteArgFileOnExit(LaunchedProcess process, Path argFile) {
+        if (argFile == null) {
+            return;
+        }
+        Runnable delete = () -> {
+            try {
+                Files.deleteIfExists(argFile);
+            } catch (IOException e) {
+                LOG.debug("Failed to delete argfile " + argFile, e);
+            }
+        };
+        if (process != null) {
+            process.onExit().thenRun(delete);
+        } else {
+            delete.run();
         }
     }
 
@@ -56,20 +728,20 @@ public final class ToolExecutionService {
             throw new IOException("Tool path is empty");
         }
 
-        File execFile = new File(execPath);
+        ExecutableValidationCache.ExecutableStatus status = ExecutableValidationCache.getInstance().get(execPath);
         boolean isMacAndApp = isMacAppBundle(execPath);
 
         // macOS .app is a directory, verify it exists
         if (isMacAndApp) {
-            if (!execFile.exists() || !execFile.isDirectory()) {
+            if (!status.isDirectory()) {
                 throw new IOException("Application bundle not found: " + execPath);
             }
         } else {
             // Normal executable must be a file
-            if (!execFile.exists() || !execFile.isFile()) {
+            if (!status.isFile()) {
                 throw new IOException("Executable file not found: " + execPath);
             }
-            if (!execFile.canExecute()) {
+            if (!status.canExecute()) {
                 // Try to warn, but sometimes canExecute returns false for valid scripts
                 // depending on ACLs
                 LOG.warn("File might not be executable: " + execPath);
@@ -77,14 +749,14 @@ public final class ToolExecutionService {
         }
     }
 
-    private List<String> buildCommand(ExternalTool tool, String filePath) {
-        List<String> command = new ArrayList<>();
+    private List<String> buildCommand(ExternalTool tool, CommandTemplate template, String filePath,
+            MacroContext context) {
         String execPath = tool.getExecutablePath();
-        String temp = tool.getCommandTemplate();
 
         if (isMacAppBundle(execPath)) {
             // macOS .app Strategy: use 'open -a'
             // We ignore complex templates for .app bundles to ensure reliability
+            List<String> command = new ArrayList<>();
             command.add("open");
             command.add("-a");
             command.add(execPath);
@@ -93,78 +765,74 @@ public final class ToolExecutionService {
             // Note: Custom arguments for .app are tricky with 'open'.
             // We prioritize simply opening the file which covers 99% of use cases (VSCode,
             // Typora, Trae).
-        } else {
-            // CLI Strategy: Standard Execution
-            if (temp != null && !temp.isEmpty()) {
-                // Use Macro Resolver
-                String expanded = macroResolver.resolve(temp, execPath, filePath);
-                command.addAll(parseCommandArgs(expanded));
-            } else {
-                // Default fallback
-                command.add(execPath);
-                command.add(filePath);
-            }
+            return command;
         }
-        return command;
+
+        // CLI Strategy: fill the precompiled template (empty template = default)
+        return macroResolver.buildArgv(template, execPath, filePath, context);
     }
 
     private boolean isMacAppBundle(String path) {
         return path != null && path.endsWith(".app") && System.getProperty("os.name").toLowerCase().contains("mac");
     }
 
+    private LaunchedProcess runProcess(List<String> command, @Nullable StdinContent stdin,
+            @Nullable ProcessLauncher.OutputListener output, LaunchPolicy policy) throws IOException {
+        if (stdin != null || output != null) {
+            return ProcessLauncher.getInstance().launch(command, stdin, output, policy);
+        }
+        // Output is discarded by the OS, no drain thread per launch
+        return ProcessLauncher.getInstance().launch(command, policy);
+    }
+
     /**
-     * 简单的参数解析，支持引号
+     * 工具的资源策略；'open -a' 只是把文件交给 launchd 启动的应用，策略对其无效
      */
-    private List<String> parseCommandArgs(String cmdParams) {
-        List<String> args = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean inQuotes = false;
+    private LaunchPolicy policyFor(ExternalTool tool) {
+        return isMacAppBundle(tool.getExecutablePath()) ? LaunchPolicy.DEFAULT : tool.getLaunchPolicy();
+    }
 
-        for (int i = 0; i < cmdParams.length(); i++) {
-            char c = cmdParams.charAt(i);
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ' ' && !inQuotes) {
-                if (current.length() > 0) {
-                    args.add(current.toString());
-                    current = new StringBuilder();
-                }
-            } else {
-                current.append(c);
-            }
+    /**
+     * 为一次启动打开输出标签页，相对路径链接按项目目录和文件所在目录解析
+     */
+    private ToolOutputConsole openConsole(ExternalTool tool, CommandBatcher.Batch batch) {
+        List<String> files = batch.getFiles();
+        String first = new File(files.get(0)).getName();
+        String title = tool.getName() + ": " + (files.size() > 1 ? first + " +" + (files.size() - 1) : first);
+        List<String> baseDirs = new ArrayList<>();
+        if (project.getBasePath() != null) {
+            baseDirs.add(project.getBasePath());
         }
-        if (current.length() > 0) {
-            args.add(current.toString());
+        String fileDir = new File(files.get(0)).getParent();
+        if (fileDir != null) {
+            baseDirs.add(fileDir);
         }
-        return args;
+        return ToolOutputConsole.open(project, title, baseDirs);
     }
 
-    private void runProcess(List<String> command) throws IOException {
-        LOG.info("Running command: " + command);
-        ProcessBuilder pb = new ProcessBuilder(command);
-        // Ensure child process isn't killed when IDE closes?
-        // Not strictly necessary for 'open' but good practice.
-        // Redirect output to avoid buffer blocking
-        pb.redirectErrorStream(true);
-
-        Process process = pb.start();
-
-        // Non-blocking drain of output stream to prevent deadlocks
-        new Thread(() -> {
-            try (java.io.InputStream stream = process.getInputStream()) {
-                while (stream.read() != -1) {
-                    // discard output
-                }
-            } catch (IOException ignored) {
+    /**
+     * 标准输入内容：有未保存修改时取编辑器文档，否则直接重定向磁盘文件
+     */
+    @NotNull
+    private static StdinContent readStdin(String filePath) {
+        return ReadAction.compute(() -> {
+            VirtualFile file = LocalFileSystem.getInstance().findFileByPath(filePath);
+            FileDocumentManager documentManager = FileDocumentManager.getInstance();
+            Document document = file != null ? documentManager.getCachedDocument(file) : null;
+            if (document == null || !documentManager.isDocumentUnsaved(document)) {
+                return StdinContent.ofFile(new File(filePath));
             }
-        }).start();
+            // Immutable snapshot: safe to stream after the read action, without copying the text
+            return StdinContent.ofText(document.getImmutableCharSequence(), file.getCharset());
+        });
     }
 
     private void notifySuccess(ExternalTool tool, String filePath) {
         File f = new File(filePath);
-        String title = "Tool Launched";
-        String content = "Opened " + f.getName() + " in " + tool.getName();
+        notifyInfo("Tool Launched", "Opened " + f.getName() + " in " + tool.getName());
+    }
 
+    private void notifyInfo(String title, String content) {
         Notifications.Bus.notify(new Notification(
                 "External Tool Opener",
                 title,
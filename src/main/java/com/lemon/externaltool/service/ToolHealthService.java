@@ -0,0 +1,206 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.lemon.externaltool.model.ExternalTool;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tool Health Service
+ * 工具健康记录与断路器：连续失败的工具暂停启动，退避期满后后台探测
+ *
+ * CLOSED -> OPEN after {@value #FAILURE_THRESHOLD} consecutive failures. While OPEN, launches are
+ * refused without touching the disk (callers may fall through to another tool). When the backoff
+ * expires a probe checks the executable on a pooled thread: if it is there the breaker goes
+ * HALF_OPEN and the next launch decides, otherwise the backoff doubles up to
+ * {@value #MAX_BACKOFF_MS} ms. Editing a tool's executable path resets its record.
+ */
+@Service(Service.Level.APP)
+public final class ToolHealthService implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(ToolHealthService.class);
+
+    private static final int FAILURE_THRESHOLD = 2;
+    private static final long BASE_BACKOFF_MS = 30_000;
+    private static final long MAX_BACKOFF_MS = 10 * 60_000;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final Map<String, Health> records = new ConcurrentHashMap<>();
+
+    public static ToolHealthService getInstance() {
+        return ApplicationManager.getApplication().getService(ToolHealthService.class);
+    }
+
+    /**
+     * 单个工具的健康记录
+     */
+    public static final class Health {
+        private final String toolName;
+        private final String executablePath;
+        private int consecutiveFailures;
+        private String lastError;
+        private long retryAtMillis;
+        private State state = State.CLOSED;
+        private ScheduledFuture<?> probe;
+
+        Health(String toolName, String executablePath) {
+            this.toolName = toolName;
+            this.executablePath = executablePath;
+        }
+
+        public synchronized int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        @Nullable
+        public synchronized String getLastError() {
+            return lastError;
+        }
+
+        public synchronized long getRetryAtMillis() {
+            return retryAtMillis;
+        }
+
+        @NotNull
+        public synchronized State getState() {
+            return state;
+        }
+
+        synchronized void cancelProbe() {
+            if (probe != null) {
+                probe.cancel(false);
+                probe = null;
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return toolName + " " + state + " (" + consecutiveFailures + " failures, last: " + lastError + ")";
+        }
+    }
+
+    /**
+     * 断路器是否允许启动该工具；不访问磁盘
+     */
+    public boolean allowsLaunch(@NotNull ExternalTool tool) {
+        Health health = current(tool);
+        if (health == null) {
+            return true;
+        }
+        synchronized (health) {
+            // A probe that has not run yet does not keep the tool blocked past its backoff
+            return health.state != State.OPEN || System.currentTimeMillis() >= health.retryAtMillis;
+        }
+    }
+
+    /**
+     * 工具的健康记录；健康的工具返回 null
+     */
+    @Nullable
+    public Health getHealth(@NotNull ExternalTool tool) {
+        return current(tool);
+    }
+
+    public void recordSuccess(@NotNull ExternalTool tool) {
+        Health health = records.remove(tool.getId());
+        if (health != null) {
+            health.cancelProbe();
+            if (health.getState() != State.CLOSED) {
+                LOG.info("Tool recovered: " + tool.getName());
+            }
+        }
+    }
+
+    public void recordFailure(@NotNull ExternalTool tool, @NotNull String error) {
+        Health health = current(tool);
+        if (health == null) {
+            health = records.computeIfAbsent(tool.getId(),
+                    id -> new Health(tool.getName(), tool.getExecutablePath()));
+        }
+        synchronized (health) {
+            health.consecutiveFailures++;
+            health.lastError = error;
+            if (health.state == State.HALF_OPEN || health.consecutiveFailures >= FAILURE_THRESHOLD) {
+                open(tool.getId(), health);
+            }
+        }
+    }
+
+    /**
+     * 记录存在且仍对应当前的可执行文件路径；路径被修改过则丢弃旧记录
+     */
+    @Nullable
+    private Health current(ExternalTool tool) {
+        Health health = records.get(tool.getId());
+        if (health != null && !Objects.equals(health.executablePath, tool.getExecutablePath())) {
+            records.remove(tool.getId(), health);
+            health.cancelProbe();
+            return null;
+        }
+        return health;
+    }
+
+    // Called with the health record locked
+    private void open(String toolId, Health health) {
+        int excess = Math.min(health.consecutiveFailures - FAILURE_THRESHOLD, 10);
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.max(0, excess));
+        health.state = State.OPEN;
+        health.retryAtMillis = System.currentTimeMillis() + backoff;
+        health.cancelProbe();
+        // The scheduler thread only hands off; the stat may block on a slow mount
+        health.probe = AppExecutorUtil.getAppScheduledExecutorService().schedule(
+                () -> ApplicationManager.getApplication().executeOnPooledThread(() -> probe(toolId, health)),
+                backoff, TimeUnit.MILLISECONDS);
+        LOG.info("Circuit opened for " + health + ", retry in " + backoff / 1000 + "s");
+    }
+
+    // Package-private so tests can run a probe without waiting out the backoff
+    void probe(String toolId, Health health) {
+        if (records.get(toolId) != health) {
+            return;
+        }
+        String path = health.executablePath;
+        boolean launchable = false;
+        if (path != null && !path.isEmpty()) {
+            ExecutableValidationCache cache = ExecutableValidationCache.getInstance();
+            cache.invalidate(path);
+            launchable = cache.get(path).isLaunchable(path.endsWith(".app"));
+        }
+        synchronized (health) {
+            if (health.state != State.OPEN) {
+                return;
+            }
+            if (launchable) {
+                // The executable is back; the next launch closes or reopens the breaker
+                health.state = State.HALF_OPEN;
+                health.probe = null;
+                LOG.info("Probe passed, circuit half-open for " + health);
+            } else {
+                health.consecutiveFailures++;
+                health.lastError = "Executable not found: " + path;
+                open(toolId, health);
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        for (Health health : records.values()) {
+            health.cancelProbe();
+        }
+        records.clear();
+    }
+}
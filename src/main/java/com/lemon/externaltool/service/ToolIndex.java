@@ -0,0 +1,235 @@
+package com.lemon.externaltool.service;
+
+import com.lemon.externaltool.model.ExternalTool;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tool Index
+ * 扩展名 -> 工具列表 的不可变索引
+ *
+ * Built once per configuration change so that menu construction is a single
+ * hash lookup instead of matching every tool against the file extension.
+ * Every enabled tool also gets a dense id (its position in sortOrder), and every
+ * extension a bitset of the tools supporting it, so the tools common to a
+ * multi-file selection are found by AND-ing bitsets.
+ */
+public final class ToolIndex {
+
+    private static final ExternalTool[] NO_TOOLS = new ExternalTool[0];
+    private static final long[] NO_BITS = new long[0];
+
+    public static final ToolIndex EMPTY = new ToolIndex(NO_TOOLS, NO_TOOLS, Collections.emptyMap(),
+            NO_BITS, Collections.emptyMap());
+
+    // Enabled tools ordered by sortOrder
+    private final ExternalTool[] enabledTools;
+    // Tools without extension restriction ("all files" bucket)
+    private final ExternalTool[] allFilesTools;
+    // Normalized extension -> matching tools (already merged with allFilesTools)
+    private final Map<String, ExternalTool[]> byExtension;
+    // Bitset (dense tool id = index in enabledTools) of the all-files bucket
+    private final long[] allFilesBits;
+    // Normalized extension -> bitset of supporting tools
+    private final Map<String, long[]> bitsByExtension;
+
+    private ToolIndex(ExternalTool[] enabledTools, ExternalTool[] allFilesTools,
+            Map<String, ExternalTool[]> byExtension, long[] allFilesBits, Map<String, long[]> bitsByExtension) {
+        this.enabledTools = enabledTools;
+        this.allFilesTools = allFilesTools;
+        this.byExtension = byExtension;
+        this.allFilesBits = allFilesBits;
+        this.bitsByExtension = bitsByExtension;
+    }
+
+    /**
+     * 根据工具配置构建索引
+     */
+    @NotNull
+    public static ToolIndex build(@Nullable List<ExternalTool> tools) {
+        if (tools == null || tools.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<ExternalTool> enabled = new ArrayList<>();
+        for (ExternalTool tool : tools) {
+            if (tool != null && tool.isEnabled()) {
+                enabled.add(tool);
+            }
+        }
+        // Stable sort keeps configuration order for equal sortOrder values
+        enabled.sort(Comparator.comparingInt(ExternalTool::getSortOrder));
+
+        // Pass 1: collect every configured extension
+        Map<String, List<ExternalTool>> buckets = new HashMap<>();
+        for (ExternalTool tool : enabled) {
+            for (String ext : normalizedExtensions(tool)) {
+                buckets.computeIfAbsent(ext, k -> new ArrayList<>());
+            }
+        }
+
+        // Pass 2: distribute tools in sortOrder, all-files tools go to every bucket
+        int words = (enabled.size() + 63) >>> 6;
+        long[] allFilesBits = new long[words];
+        Map<String, long[]> bitsByExtension = new HashMap<>(buckets.size() * 2);
+        for (String ext : buckets.keySet()) {
+            bitsByExtension.put(ext, new long[words]);
+        }
+
+        List<ExternalTool> allFiles = new ArrayList<>();
+        for (int id = 0; id < enabled.size(); id++) {
+            ExternalTool tool = enabled.get(id);
+            Set<String> exts = normalizedExtensions(tool);
+            if (exts.isEmpty()) {
+                allFiles.add(tool);
+                setBit(allFilesBits, id);
+                for (List<ExternalTool> bucket : buckets.values()) {
+                    bucket.add(tool);
+                }
+                for (long[] bits : bitsByExtension.values()) {
+                    setBit(bits, id);
+                }
+            } else {
+                for (String ext : exts) {
+                    buckets.get(ext).add(tool);
+                    setBit(bitsByExtension.get(ext), id);
+                }
+            }
+        }
+
+        Map<String, ExternalTool[]> byExtension = new HashMap<>(buckets.size() * 2);
+        for (Map.Entry<String, List<ExternalTool>> entry : buckets.entrySet()) {
+            byExtension.put(entry.getKey(), entry.getValue().toArray(NO_TOOLS));
+        }
+
+        return new ToolIndex(enabled.toArray(NO_TOOLS), allFiles.toArray(NO_TOOLS),
+                Collections.unmodifiableMap(byExtension), allFilesBits, Collections.unmodifiableMap(bitsByExtension));
+    }
+
+    /**
+     * 查找支持指定扩展名的工具（按 sortOrder 排序）
+     * 返回的数组为共享实例，调用方不得修改
+     */
+    @NotNull
+    public ExternalTool[] lookup(@Nullable String extension) {
+        if (extension == null) {
+            return allFilesTools;
+        }
+        // Fast path: FileTypeUtils already returns a dot-prefixed extension
+        ExternalTool[] tools = byExtension.get(extension);
+        if (tools != null) {
+            return tools;
+        }
+        tools = byExtension.get(normalizeExtension(extension));
+        return tools != null ? tools : allFilesTools;
+    }
+
+    /**
+     * 查找同时支持所有给定扩展名的工具（按 sortOrder 排序）
+     * 集合中的 null 表示无扩展名的文件
+     */
+    @NotNull
+    public ExternalTool[] lookupCommon(@NotNull Collection<String> extensions) {
+        if (extensions.isEmpty()) {
+            return NO_TOOLS;
+        }
+        if (extensions.size() == 1) {
+            return lookup(extensions.iterator().next());
+        }
+
+        long[] acc = null;
+        for (String extension : extensions) {
+            long[] bits = bitsFor(extension);
+            if (acc == null) {
+                acc = bits.clone();
+            } else {
+                long any = 0;
+                for (int i = 0; i < acc.length; i++) {
+                    acc[i] &= bits[i];
+                    any |= acc[i];
+                }
+                if (any == 0) {
+                    return NO_TOOLS;
+                }
+            }
+        }
+
+        int count = 0;
+        for (long word : acc) {
+            count += Long.bitCount(word);
+        }
+        ExternalTool[] result = new ExternalTool[count];
+        int n = 0;
+        for (int w = 0; w < acc.length; w++) {
+            long word = acc[w];
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                result[n++] = enabledTools[(w << 6) + bit];
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取扩展名对应的工具位图，共享实例，调用方不得修改
+     */
+    @NotNull
+    private long[] bitsFor(@Nullable String extension) {
+        if (extension == null) {
+            return allFilesBits;
+        }
+        long[] bits = bitsByExtension.get(extension);
+        if (bits == null) {
+            bits = bitsByExtension.get(normalizeExtension(extension));
+        }
+        return bits != null ? bits : allFilesBits;
+    }
+
+    @NotNull
+    public ExternalTool[] getEnabledTools() {
+        return enabledTools;
+    }
+
+    @NotNull
+    public ExternalTool[] getAllFilesTools() {
+        return allFilesTools;
+    }
+
+    /**
+     * 规范化扩展名：小写并以 "." 开头
+     */
+    @NotNull
+    public static String normalizeExtension(@NotNull String extension) {
+        String ext = extension.toLowerCase();
+        return ext.startsWith(".") ? ext : "." + ext;
+    }
+
+    private static void setBit(long[] bits, int id) {
+        bits[id >>> 6] |= 1L << id;
+    }
+
+    private static Set<String> normalizedExtensions(ExternalTool tool) {
+        List<String> supported = tool.getSupportedExtensions();
+        if (supported == null || supported.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (String ext : supported) {
+            if (ext != null) {
+                result.add(normalizeExtension(ext));
+            }
+        }
+        return result;
+    }
+}
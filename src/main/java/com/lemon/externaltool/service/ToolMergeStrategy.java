@@ -75,13 +75,8 @@ public class ToolMergeStrategy {
         tool.setExecutablePath(detected.getDetectedPath());
         tool.setEnabled(false); // Default to disabled
 
-        // Set default extensions from definition
-        List<String> extensions = detected.getDefinition().getExtensions();
-        if (extensions != null && !extensions.isEmpty()) {
-            tool.setSupportedExtensions(extensions);
-        } else {
-            tool.setSupportedExtensions(new ArrayList<>()); // Empty = all files
-        }
+        // Set default extensions (empty = all files) and handoff from definition
+        detected.getDefinition().applyTo(tool);
 
         return tool;
     }
@@ -8,6 +8,9 @@ import org.yaml.snakeyaml.LoaderOptions;
 import java.io.InputStream;
 
 public class ToolRegistryLoader {
+
+    // The bundled registry never changes within a session; parsed once
+    private static volatile ToolRegistry defaultRegistry;
     
     public static ToolRegistry loadFromResource(String resourcePath) {
         try (InputStream is = ToolRegistryLoader.class.getResourceAsStream(resourcePath)) {
@@ -24,6 +27,11 @@ public class ToolRegistryLoader {
     }
     
     public static ToolRegistry loadDefault() {
-        return loadFromResource("/tool-registry.yaml");
+        ToolRegistry registry = defaultRegistry;
+        if (registry == null) {
+            registry = loadFromResource("/tool-registry.yaml");
+            defaultRegistry = registry;
+        }
+        return registry;
     }
 }
@@ -0,0 +1,57 @@
+package com.lemon.externaltool.service;
+
+import com.lemon.externaltool.model.ExternalTool;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tool Snapshot
+ * 工具配置的不可变版本快照
+ *
+ * Published by {@link ExternalToolService} through a volatile reference: readers never lock,
+ * writers build a new snapshot and swap it in. The version increases with every change, so
+ * callers can cache data derived from a snapshot and compare versions to detect staleness.
+ */
+public final class ToolSnapshot {
+
+    public static final ToolSnapshot EMPTY = new ToolSnapshot(0, Collections.emptyList(), ToolIndex.EMPTY);
+
+    private final long version;
+    private final List<ExternalTool> tools;
+    private final ToolIndex index;
+
+    private ToolSnapshot(long version, List<ExternalTool> tools, ToolIndex index) {
+        this.version = version;
+        this.tools = tools;
+        this.index = index;
+    }
+
+    /**
+     * 基于工具列表创建新快照（列表会被复制）
+     */
+    @NotNull
+    static ToolSnapshot create(long version, @NotNull List<ExternalTool> tools) {
+        List<ExternalTool> copy = Collections.unmodifiableList(new ArrayList<>(tools));
+        return new ToolSnapshot(version, copy, ToolIndex.build(copy));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 全部工具（配置顺序，只读）
+     */
+    @NotNull
+    public List<ExternalTool> getTools() {
+        return tools;
+    }
+
+    @NotNull
+    public ToolIndex getIndex() {
+        return index;
+    }
+}
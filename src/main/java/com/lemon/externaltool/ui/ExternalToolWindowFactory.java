@@ -0,0 +1,27 @@
+package com.lemon.externaltool.ui;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * External Tool Window Factory
+ * "External Tools" 输出工具窗口，每次运行一个标签页
+ *
+ * Starts hidden; {@link ToolOutputConsole} makes it available when the first tool with
+ * "Show output" runs.
+ */
+public class ExternalToolWindowFactory implements ToolWindowFactory, DumbAware {
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        // Tabs are added per run
+    }
+
+    @Override
+    public boolean shouldBeAvailable(@NotNull Project project) {
+        return false;
+    }
+}
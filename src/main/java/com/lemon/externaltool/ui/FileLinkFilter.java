@@ -0,0 +1,109 @@
+package com.lemon.externaltool.ui;
+
+import com.intellij.execution.filters.Filter;
+import com.intellij.execution.filters.OpenFileHyperlinkInfo;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * File Link Filter
+ * 将工具输出中的 file:line[:column] 转换为可点击的链接
+ *
+ * Relative paths are resolved against the given base directories (project, then the launched
+ * file's directory). Resolved paths are cached, so a linter repeating the same file for thousands
+ * of lines looks it up once.
+ */
+public class FileLinkFilter implements Filter {
+
+    // path with an extension, then :line and optional :column (an extension keeps "12:30:00" out)
+    private static final Pattern FILE_LINE = Pattern.compile(
+            "((?:[A-Za-z]:)?[^\\s:\"'()<>\\[\\]|]*[^\\s:\"'()<>\\[\\]|.]\\.[A-Za-z0-9_]+):(\\d+)(?::(\\d+))?");
+
+    private static final int MAX_CACHED_PATHS = 256;
+
+    private final Project project;
+    private final List<String> baseDirs;
+    private final Map<String, VirtualFile> resolved = new LinkedHashMap<String, VirtualFile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VirtualFile> eldest) {
+            return size() > MAX_CACHED_PATHS;
+        }
+    };
+
+    public FileLinkFilter(@NotNull Project project, @NotNull List<String> baseDirs) {
+        this.project = project;
+        this.baseDirs = new ArrayList<>(baseDirs);
+    }
+
+    @Nullable
+    @Override
+    public Result applyFilter(@NotNull String line, int entireLength) {
+        // Cheap pre-check, most lines of most tools have no location
+        if (line.indexOf(':') < 0) {
+            return null;
+        }
+        int lineStart = entireLength - line.length();
+        List<ResultItem> items = null;
+        Matcher matcher = FILE_LINE.matcher(line);
+        while (matcher.find()) {
+            VirtualFile file = resolve(matcher.group(1));
+            if (file == null) {
+                continue;
+            }
+            int lineNumber = Math.max(0, parseInt(matcher.group(2)) - 1);
+            int column = matcher.group(3) != null ? Math.max(0, parseInt(matcher.group(3)) - 1) : 0;
+            if (items == null) {
+                items = new ArrayList<>(1);
+            }
+            items.add(new ResultItem(lineStart + matcher.start(), lineStart + matcher.end(),
+                    new OpenFileHyperlinkInfo(project, file, lineNumber, column)));
+        }
+        return items != null ? new Result(items) : null;
+    }
+
+    @Nullable
+    private VirtualFile resolve(String path) {
+        synchronized (resolved) {
+            if (resolved.containsKey(path)) {
+                return resolved.get(path);
+            }
+        }
+        VirtualFile file = null;
+        if (new File(path).isAbsolute()) {
+            file = LocalFileSystem.getInstance().findFileByPath(path.replace('\\', '/'));
+        } else {
+            for (String base : baseDirs) {
+                file = LocalFileSystem.getInstance().findFileByPath(base + "/" + path.replace('\\', '/'));
+                if (file != null) {
+                    break;
+                }
+            }
+        }
+        if (file != null && file.isDirectory()) {
+            file = null;
+        }
+        synchronized (resolved) {
+            resolved.put(path, file);
+        }
+        return file;
+    }
+
+    private static int parseInt(String digits) {
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.lemon.externaltool.ui;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.ui.content.ContentManager;
+import com.lemon.externaltool.service.LaunchQueue;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Launch Queue Panel
+ * "External Tools" 工具窗口中的 "Queue" 标签页：等待空位的启动，可取消
+ *
+ * Added the first time a launch has to wait. Queue changes arrive on process exit threads and
+ * are coalesced into one EDT refresh.
+ */
+public final class LaunchQueuePanel extends JPanel {
+
+    public static final String TAB_TITLE = "Queue";
+
+    private final LaunchQueue queue;
+    private final DefaultListModel<LaunchQueue.QueuedLaunch> model = new DefaultListModel<>();
+    private final JBList<LaunchQueue.QueuedLaunch> list = new JBList<>(model);
+    private final JButton cancelButton = new JButton("Cancel");
+    private final JButton cancelAllButton = new JButton("Cancel All");
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private final Runnable queueListener = this::queueRefresh;
+
+    private LaunchQueuePanel(@NotNull Project project) {
+        super(new BorderLayout());
+        this.queue = LaunchQueue.getInstance(project);
+
+        list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                    boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (value instanceof LaunchQueue.QueuedLaunch) {
+                    LaunchQueue.QueuedLaunch launch = (LaunchQueue.QueuedLaunch) value;
+                    long waited = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - launch.getQueuedAtMillis());
+                    setText(launch.getToolName() + " - " + launch.getDescription() + "  (waiting " + waited + "s)");
+                }
+                return this;
+            }
+        });
+        list.addListSelectionListener(e -> updateButtons());
+        add(new JBScrollPane(list), BorderLayout.CENTER);
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        cancelButton.addActionListener(e -> list.getSelectedValuesList().forEach(LaunchQueue.QueuedLaunch::cancel));
+        cancelAllButton.addActionListener(e -> queue.cancelAll());
+        buttons.add(cancelButton);
+        buttons.add(cancelAllButton);
+        add(buttons, BorderLayout.SOUTH);
+
+        queue.addListener(queueListener);
+        refresh();
+    }
+
+    /**
+     * 确保 "Queue" 标签页存在并显示工具窗口；可在任意线程调用
+     */
+    public static void show(@NotNull Project project) {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
+            ToolWindow toolWindow = ToolWindowManager.getInstance(project)
+                    .getToolWindow(ToolOutputConsole.TOOL_WINDOW_ID);
+            if (toolWindow == null) {
+                return;
+            }
+            ContentManager contentManager = toolWindow.getContentManager();
+            Content content = contentManager.findContent(TAB_TITLE);
+            if (content == null) {
+                LaunchQueuePanel panel = new LaunchQueuePanel(project);
+                ContentFactory contentFactory = ApplicationManager.getApplication().getService(ContentFactory.class);
+                content = contentFactory.createContent(panel, TAB_TITLE, false);
+                // Kept while the project is open; output tabs are trimmed around it
+                content.setCloseable(false);
+                content.setDisposer(() -> panel.queue.removeListener(panel.queueListener));
+                contentManager.addContent(content);
+            }
+            contentManager.setSelectedContent(content);
+            toolWindow.setAvailable(true);
+            toolWindow.activate(null, false);
+        }, ModalityState.any());
+    }
+
+    private void queueRefresh() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            ApplicationManager.getApplication().invokeLater(() -> {
+                refreshQueued.set(false);
+                refresh();
+            }, ModalityState.any());
+        }
+    }
+
+    private void refresh() {
+        model.clear();
+        for (LaunchQueue.QueuedLaunch launch : queue.getPending()) {
+            model.addElement(launch);
+        }
+        updateButtons();
+    }
+
+    private void updateButtons() {
+        cancelButton.setEnabled(!list.isSelectionEmpty());
+        cancelAllButton.setEnabled(!model.isEmpty());
+    }
+}
@@ -1,24 +1,36 @@
 package com.lemon.externaltool.ui;
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.fileChooser.FileChooser;
 import com.intellij.openapi.fileChooser.FileChooserDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.TextFieldWithBrowseButton;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.ToolbarDecorator;
 import com.intellij.ui.components.JBList;
 import com.intellij.ui.components.JBScrollPane;
+import com.lemon.externaltool.model.DetectedTool;
 import com.lemon.externaltool.model.ExternalTool;
+import com.lemon.externaltool.model.MultiFileMode;
+import com.lemon.externaltool.model.ToolDefinition;
+import com.lemon.externaltool.service.ExecutableValidationCache;
 import com.lemon.externaltool.service.ExternalToolService;
+import com.lemon.externaltool.service.ToolDetectionService;
+import com.lemon.externaltool.service.ToolRegistryLoader;
 import com.lemon.externaltool.ui.ToolValidator;
+import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import java.awt.*;
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tool Config Panel
@@ -41,8 +53,23 @@ public class ToolConfigPanel {
     private TextFieldWithBrowseButton pathField;
     private JTextArea extensionsArea;
     private JTextField commandTemplateField;
+    private JTextField handoffCommandField;
+    private JTextField handoffProcessesField;
+    private JComboBox<MultiFileMode> multiFileModeCombo;
     private JCheckBox enabledCheckBox;
     private JCheckBox defaultCheckBox;
+    private JCheckBox singleInstanceCheckBox;
+    private JCheckBox terminateOnCloseCheckBox;
+    private JCheckBox stdinModeCheckBox;
+    private JCheckBox showOutputCheckBox;
+    private JCheckBox filterModeCheckBox;
+    private JCheckBox singleQuotesCheckBox;
+    private JSpinner nicenessSpinner;
+    private JCheckBox idleIoCheckBox;
+    private JSpinner memoryLimitSpinner;
+    private JSpinner cpuQuotaSpinner;
+    private JSpinner timeoutSpinner;
+    private JSpinner maxConcurrentSpinner;
     private JButton testButton;
     private JLabel errorLabel;
 
@@ -51,6 +78,7 @@ public class ToolConfigPanel {
     private boolean isModified = false;
     private boolean isUpdatingUI = false; // Guard flag to prevent loop updates
     private JButton detectButton; // Detect tools button
+    private JCheckBox launcherHelperCheckBox; // Global: launch via helper process
 
     public ToolConfigPanel() {
         this.service = ExternalToolService.getInstance();
@@ -105,6 +133,11 @@ public class ToolConfigPanel {
         detectButton.addActionListener(e -> detectTools());
         buttonPanel.add(detectButton);
 
+        launcherHelperCheckBox = new JCheckBox("Use launcher helper");
+        launcherHelperCheckBox.setToolTipText("Start tools from a small helper process instead of the IDE process");
+        launcherHelperCheckBox.addActionListener(e -> isModified = true);
+        buttonPanel.add(launcherHelperCheckBox);
+
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         return panel;
@@ -150,11 +183,31 @@ public class ToolConfigPanel {
         addControl(formPanel, gbc, 4, commandTemplateField);
 
         addHint(formPanel, gbc, 5,
-                "<html><i>Vars: {path}, {file}, {fileDir}. Default: \"{path}\" \"{file}\"</i></html>");
-
-        // 5. Options
+                "<html><i>Vars: {path}, {file}, {files}, {fileDir}, {fileName}, {projectDir}, {moduleDir}, {vcsRoot},"
+                        + " {relativePath}, {line}, {column}, {selection}, {env:VAR}. Default: \"{path}\" \"{file}\"</i></html>");
+
+        // 5. Handoff to a running instance
+        addLabel(formPanel, gbc, 6, "Handoff:");
+        handoffCommandField = new JTextField();
+        handoffCommandField.setToolTipText("Command that passes files to an already running instance, e.g. emacsclient -n \"{file}\"");
+        bindField(handoffCommandField);
+        addControl(formPanel, gbc, 6, handoffCommandField);
+
+        addLabel(formPanel, gbc, 7, "Running as:");
+        handoffProcessesField = new JTextField();
+        handoffProcessesField.setToolTipText("Comma-separated process names that mean the tool is already running");
+        bindField(handoffProcessesField);
+        addControl(formPanel, gbc, 7, handoffProcessesField);
+
+        // 6. Multi-file launch mode
+        addLabel(formPanel, gbc, 8, "Multiple files:");
+        multiFileModeCombo = new JComboBox<>(MultiFileMode.values());
+        multiFileModeCombo.addActionListener(e -> updateCurrentToolModel());
+        addControl(formPanel, gbc, 8, multiFileModeCombo);
+
+        // 7. Options
         gbc.gridx = 1;
-        gbc.gridy = 6;
+        gbc.gridy = 9;
         JPanel optionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
 
         enabledCheckBox = new JCheckBox("Enabled");
@@ -165,16 +218,79 @@ public class ToolConfigPanel {
         defaultCheckBox = new JCheckBox("Default");
         defaultCheckBox.addActionListener(e -> updateCurrentToolModel());
         optionsPanel.add(defaultCheckBox);
+        optionsPanel.add(Box.createHorizontalStrut(15));
+
+        singleInstanceCheckBox = new JCheckBox("Single instance");
+        singleInstanceCheckBox.setToolTipText("Don't start the tool again for a file it already has open");
+        singleInstanceCheckBox.addActionListener(e -> updateCurrentToolModel());
+        optionsPanel.add(singleInstanceCheckBox);
+        optionsPanel.add(Box.createHorizontalStrut(15));
+
+        terminateOnCloseCheckBox = new JCheckBox("Close with project");
+        terminateOnCloseCheckBox.setToolTipText("Terminate processes started from a project when it is closed");
+        terminateOnCloseCheckBox.addActionListener(e -> updateCurrentToolModel());
+        optionsPanel.add(terminateOnCloseCheckBox);
 
         formPanel.add(optionsPanel, gbc);
 
-        // 6. Buttons & Validation
-        gbc.gridy = 7;
+        // 8. Input / output
+        gbc.gridy = 10;
+        JPanel ioPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+
+        stdinModeCheckBox = new JCheckBox("Send to stdin");
+        stdinModeCheckBox.setToolTipText("Write the editor content, including unsaved changes, to the tool's standard input");
+        stdinModeCheckBox.addActionListener(e -> updateCurrentToolModel());
+        ioPanel.add(stdinModeCheckBox);
+        ioPanel.add(Box.createHorizontalStrut(15));
+
+        showOutputCheckBox = new JCheckBox("Show output");
+        showOutputCheckBox.setToolTipText("Stream the tool's output to the External Tools tool window");
+        showOutputCheckBox.addActionListener(e -> updateCurrentToolModel());
+        ioPanel.add(showOutputCheckBox);
+        ioPanel.add(Box.createHorizontalStrut(15));
+
+        filterModeCheckBox = new JCheckBox("Filter (replace text with output)");
+        filterModeCheckBox.setToolTipText("Pipe the file or selection through the tool and replace it with the tool's output");
+        filterModeCheckBox.addActionListener(e -> updateCurrentToolModel());
+        ioPanel.add(filterModeCheckBox);
+        ioPanel.add(Box.createHorizontalStrut(15));
+
+        singleQuotesCheckBox = new JCheckBox("Single quotes group arguments");
+        singleQuotesCheckBox.setToolTipText("Treat 'text' in the command templates like \"text\" (otherwise ' is an ordinary character)");
+        singleQuotesCheckBox.addActionListener(e -> updateCurrentToolModel());
+        ioPanel.add(singleQuotesCheckBox);
+
+        formPanel.add(ioPanel, gbc);
+
+        // 9. Resource limits (0 = unlimited)
+        addLabel(formPanel, gbc, 11, "Limits:");
+        JPanel limitsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+
+        nicenessSpinner = addLimitSpinner(limitsPanel, "Nice", 19, 1,
+                "Lower the tool's CPU priority (nice increment, 0 = unchanged)");
+        idleIoCheckBox = new JCheckBox("Idle I/O");
+        idleIoCheckBox.setToolTipText("Only use the disk when the system is otherwise idle (Linux ionice)");
+        idleIoCheckBox.addActionListener(e -> updateCurrentToolModel());
+        limitsPanel.add(idleIoCheckBox);
+        limitsPanel.add(Box.createHorizontalStrut(15));
+        memoryLimitSpinner = addLimitSpinner(limitsPanel, "Memory MB", 1024 * 1024, 256,
+                "Memory cap via a cgroup v2 scope (Linux with systemd)");
+        cpuQuotaSpinner = addLimitSpinner(limitsPanel, "CPU %", 6400, 50,
+                "CPU cap via a cgroup v2 scope, 100 = one core (Linux with systemd)");
+        timeoutSpinner = addLimitSpinner(limitsPanel, "Timeout s", 24 * 3600, 10,
+                "Filter mode only: kill the tool and its child processes after this many seconds");
+        maxConcurrentSpinner = addLimitSpinner(limitsPanel, "Max running", 64, 1,
+                "Launches beyond this many running processes wait in the queue (External Tools window)");
+
+        addControl(formPanel, gbc, 11, limitsPanel);
+
+        // 10. Buttons & Validation
+        gbc.gridy = 12;
         testButton = new JButton("Test Tool");
         testButton.addActionListener(e -> testTool());
         formPanel.add(testButton, gbc);
 
-        gbc.gridy = 8;
+        gbc.gridy = 13;
         errorLabel = new JLabel(" ");
         errorLabel.setForeground(Color.RED);
         formPanel.add(errorLabel, gbc);
@@ -199,8 +315,23 @@ public class ToolConfigPanel {
             pathField.setEnabled(hasSelection);
             extensionsArea.setEnabled(hasSelection);
             commandTemplateField.setEnabled(hasSelection);
+            handoffCommandField.setEnabled(hasSelection);
+            handoffProcessesField.setEnabled(hasSelection);
+            multiFileModeCombo.setEnabled(hasSelection);
             enabledCheckBox.setEnabled(hasSelection);
             defaultCheckBox.setEnabled(hasSelection);
+            singleInstanceCheckBox.setEnabled(hasSelection);
+            terminateOnCloseCheckBox.setEnabled(hasSelection);
+            stdinModeCheckBox.setEnabled(hasSelection);
+            showOutputCheckBox.setEnabled(hasSelection);
+            filterModeCheckBox.setEnabled(hasSelection);
+            singleQuotesCheckBox.setEnabled(hasSelection);
+            nicenessSpinner.setEnabled(hasSelection);
+            idleIoCheckBox.setEnabled(hasSelection);
+            memoryLimitSpinner.setEnabled(hasSelection);
+            cpuQuotaSpinner.setEnabled(hasSelection);
+            timeoutSpinner.setEnabled(hasSelection);
+            maxConcurrentSpinner.setEnabled(hasSelection);
             testButton.setEnabled(hasSelection);
 
             if (hasSelection) {
@@ -208,16 +339,46 @@ public class ToolConfigPanel {
                 pathField.setText(selected.getExecutablePath());
                 extensionsArea.setText(String.join(", ", selected.getSupportedExtensions()));
                 commandTemplateField.setText(selected.getCommandTemplate());
+                handoffCommandField.setText(selected.getHandoffCommand() != null ? selected.getHandoffCommand() : "");
+                handoffProcessesField.setText(String.join(", ", selected.getHandoffProcesses()));
+                multiFileModeCombo.setSelectedItem(selected.getMultiFileMode());
                 enabledCheckBox.setSelected(selected.isEnabled());
                 defaultCheckBox.setSelected(selected.isDefault());
+                singleInstanceCheckBox.setSelected(selected.isSingleInstance());
+                terminateOnCloseCheckBox.setSelected(selected.isTerminateOnProjectClose());
+                stdinModeCheckBox.setSelected(selected.isStdinMode());
+                showOutputCheckBox.setSelected(selected.isShowOutput());
+                filterModeCheckBox.setSelected(selected.isFilterMode());
+                singleQuotesCheckBox.setSelected(selected.isSingleQuotes());
+                nicenessSpinner.setValue(selected.getNiceness());
+                idleIoCheckBox.setSelected(selected.isIdleIo());
+                memoryLimitSpinner.setValue(selected.getMemoryLimitMb());
+                cpuQuotaSpinner.setValue(selected.getCpuQuotaPercent());
+                timeoutSpinner.setValue(selected.getTimeoutSeconds());
+                maxConcurrentSpinner.setValue(selected.getMaxConcurrent());
                 validateForm(selected);
             } else {
                 nameField.setText("");
                 pathField.setText("");
                 extensionsArea.setText("");
                 commandTemplateField.setText("");
+                handoffCommandField.setText("");
+                handoffProcessesField.setText("");
+                multiFileModeCombo.setSelectedItem(MultiFileMode.SEPARATE);
                 enabledCheckBox.setSelected(false);
                 defaultCheckBox.setSelected(false);
+                singleInstanceCheckBox.setSelected(false);
+                terminateOnCloseCheckBox.setSelected(false);
+                stdinModeCheckBox.setSelected(false);
+                showOutputCheckBox.setSelected(false);
+                filterModeCheckBox.setSelected(false);
+                singleQuotesCheckBox.setSelected(false);
+                nicenessSpinner.setValue(0);
+                idleIoCheckBox.setSelected(false);
+                memoryLimitSpinner.setValue(0);
+                cpuQuotaSpinner.setValue(0);
+                timeoutSpinner.setValue(0);
+                maxConcurrentSpinner.setValue(0);
                 errorLabel.setText(" ");
             }
         } finally {
@@ -237,8 +398,29 @@ public class ToolConfigPanel {
         selected.setName(nameField.getText().trim());
         selected.setExecutablePath(pathField.getText().trim());
         selected.setCommandTemplate(commandTemplateField.getText().trim());
+        String handoff = handoffCommandField.getText().trim();
+        selected.setHandoffCommand(handoff.isEmpty() ? null : handoff);
+        List<String> processes = new ArrayList<>();
+        for (String name : handoffProcessesField.getText().split(",")) {
+            if (!name.trim().isEmpty())
+                processes.add(name.trim());
+        }
+        selected.setHandoffProcesses(processes);
+        selected.setMultiFileMode((MultiFileMode) multiFileModeCombo.getSelectedItem());
         selected.setEnabled(enabledCheckBox.isSelected());
         selected.setDefault(defaultCheckBox.isSelected());
+        selected.setSingleInstance(singleInstanceCheckBox.isSelected());
+        selected.setTerminateOnProjectClose(terminateOnCloseCheckBox.isSelected());
+        selected.setStdinMode(stdinModeCheckBox.isSelected());
+        selected.setShowOutput(showOutputCheckBox.isSelected());
+        selected.setFilterMode(filterModeCheckBox.isSelected());
+        selected.setSingleQuotes(singleQuotesCheckBox.isSelected());
+        selected.setNiceness((Integer) nicenessSpinner.getValue());
+        selected.setIdleIo(idleIoCheckBox.isSelected());
+        selected.setMemoryLimitMb((Integer) memoryLimitSpinner.getValue());
+        selected.setCpuQuotaPercent((Integer) cpuQuotaSpinner.getValue());
+        selected.setTimeoutSeconds((Integer) timeoutSpinner.getValue());
+        selected.setMaxConcurrent((Integer) maxConcurrentSpinner.getValue());
 
         // Parse extensions
         List<String> exts = new ArrayList<>();
@@ -263,9 +445,12 @@ public class ToolConfigPanel {
     private void validateForm(ExternalTool tool) {
         ToolValidator.ValidationResult result = ToolValidator.validate(tool);
         if (result.isValid) {
-            errorLabel.setText(" ");
+            // A valid tool may still carry a warning, e.g. a likely macro typo
+            errorLabel.setForeground(result.message != null ? Color.ORANGE.darker() : Color.RED);
+            errorLabel.setText(result.message != null ? result.message : " ");
             testButton.setEnabled(true);
         } else {
+            errorLabel.setForeground(Color.RED);
             errorLabel.setText(result.message);
             testButton.setEnabled(false);
         }
@@ -333,16 +518,8 @@ public class ToolConfigPanel {
             return;
 
         String path = selected.getExecutablePath();
-        File f = new File(path);
-
         boolean isMacApp = path.endsWith(".app") && System.getProperty("os.name").toLowerCase().contains("mac");
-        boolean exists;
-
-        if (isMacApp) {
-            exists = f.exists() && f.isDirectory();
-        } else {
-            exists = f.exists() && f.isFile();
-        }
+        boolean exists = ExecutableValidationCache.getInstance().get(path).isLaunchable(isMacApp);
 
         if (exists) {
             JOptionPane.showMessageDialog(mainPanel, "Path is valid!", "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -367,12 +544,14 @@ public class ToolConfigPanel {
             toSave.add(t);
         }
         service.setTools(toSave);
+        service.setUseLauncherHelper(launcherHelperCheckBox.isSelected());
         isModified = false;
     }
 
     public void reset() {
         workingTools = new ArrayList<>();
         listModel.clear();
+        launcherHelperCheckBox.setSelected(service.isUseLauncherHelper());
 
         for (ExternalTool tool : service.getAllTools()) {
             ExternalTool clone = tool.clone();
@@ -408,6 +587,18 @@ public class ToolConfigPanel {
         p.add(comp, gbc);
     }
 
+    private JSpinner addLimitSpinner(JPanel p, String label, int max, int step, String tooltip) {
+        JLabel l = new JLabel(label + " ");
+        l.setToolTipText(tooltip);
+        p.add(l);
+        JSpinner spinner = new JSpinner(new SpinnerNumberModel(0, 0, max, step));
+        spinner.setToolTipText(tooltip);
+        spinner.addChangeListener(e -> updateCurrentToolModel());
+        p.add(spinner);
+        p.add(Box.createHorizontalStrut(15));
+        return spinner;
+    }
+
     private void addHint(JPanel p, GridBagConstraints gbc, int row, String html) {
         gbc.gridx = 1;
         gbc.gridy = row;
@@ -483,77 +674,99 @@ public class ToolConfigPanel {
 
     /**
      * Detect tools automatically
+     * The scan runs as a background task; the selection dialog opens right away and fills in as
+     * tools are found.
      */
     private void detectTools() {
         detectButton.setEnabled(false);
         detectButton.setText("Detecting...");
-        SwingUtilities.invokeLater(() -> {
-            try {
-                com.lemon.externaltool.service.ToolDetectionService detectionService = new com.lemon.externaltool.service.ToolDetectionService();
-                List<com.lemon.externaltool.model.DetectedTool> detected = detectionService.detectAvailableTools();
-                List<com.lemon.externaltool.model.DetectedTool> newTools = new ArrayList<>();
-                List<com.lemon.externaltool.model.DetectedTool> updatedTools = new ArrayList<>();
-                for (com.lemon.externaltool.model.DetectedTool tool : detected) {
-                    if (!tool.isAvailable())
-                        continue;
-                    boolean exists = workingTools.stream().anyMatch(t -> t.getName().equalsIgnoreCase(tool.getName()));
-                    if (exists) {
-                        updatedTools.add(tool);
-                    } else {
-                        newTools.add(tool);
-                    }
-                }
-                if (newTools.isEmpty() && updatedTools.isEmpty()) {
-                    JOptionPane.showMessageDialog(mainPanel,
-                            "No new tools detected. All available tools are already configured.", "Tool Detection",
-                            JOptionPane.INFORMATION_MESSAGE);
-                    return;
-                }
-                for (com.lemon.externaltool.model.DetectedTool updated : updatedTools) {
-                    for (ExternalTool existing : workingTools) {
-                        if (existing.getName().equalsIgnoreCase(updated.getName())) {
-                            existing.setExecutablePath(updated.getDetectedPath());
-                            break;
-                        }
-                    }
-                }
-                if (!newTools.isEmpty()) {
-                    ToolSelectionDialog dialog = new ToolSelectionDialog(newTools, updatedTools);
-                    if (dialog.showAndGet()) {
-                        List<ExternalTool> selectedTools = dialog.getSelectedTools();
-                        for (ExternalTool tool : selectedTools) {
-                            workingTools.add(tool);
-                            listModel.addElement(tool);
+        ToolSelectionDialog dialog = new ToolSelectionDialog();
+        int[] updatedCount = { 0 };
+
+        new Task.Backgroundable(null, "Detecting external tools", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                try {
+                    indicator.setIndeterminate(true);
+                    indicator.setText("Loading tool registry");
+                    List<ToolDefinition> definitions = ToolRegistryLoader.loadDefault().getTools();
+                    int total = definitions.size();
+                    AtomicInteger checked = new AtomicInteger();
+                    AtomicBoolean progressQueued = new AtomicBoolean();
+                    indicator.setIndeterminate(false);
+                    indicator.setText("Checking " + total + " tools");
+
+                    // ModalityState.any(): the selection dialog is modal and must update while shown
+                    new ToolDetectionService().detectTools(definitions, tool -> {
+                        indicator.setFraction((double) checked.incrementAndGet() / total);
+                        if (tool.isAvailable()) {
+                            ApplicationManager.getApplication().invokeLater(() -> {
+                                if (!dialog.isStopRequested()) {
+                                    updatedCount[0] += addDetectedTool(dialog, tool);
+                                }
+                            }, ModalityState.any());
                         }
-                        if (!selectedTools.isEmpty()) {
-                            toolList.setSelectedIndex(workingTools.size() - 1);
-                            isModified = true;
+                        // At most one progress update in the EDT queue
+                        if (progressQueued.compareAndSet(false, true)) {
+                            ApplicationManager.getApplication().invokeLater(() -> {
+                                progressQueued.set(false);
+                                dialog.setProgress(checked.get(), total);
+                            }, ModalityState.any());
                         }
-                        String updateMsg = updatedTools.isEmpty() ? ""
-                                : String.format(" Updated %d existing tool%s.", updatedTools.size(),
-                                        updatedTools.size() == 1 ? "" : "s");
-                        String message = String.format("Successfully added %d tool%s.%s", selectedTools.size(),
-                                selectedTools.size() == 1 ? "" : "s", updateMsg);
-                        JOptionPane.showMessageDialog(mainPanel, message, "Tool Detection Complete",
-                                JOptionPane.INFORMATION_MESSAGE);
-                    }
-                } else if (!updatedTools.isEmpty()) {
-                    isModified = true;
-                    toolList.repaint();
-                    JOptionPane.showMessageDialog(mainPanel,
-                            String.format("Updated %d existing tool%s.", updatedTools.size(),
-                                    updatedTools.size() == 1 ? "" : "s"),
-                            "Tool Detection Complete", JOptionPane.INFORMATION_MESSAGE);
+                    }, () -> indicator.isCanceled() || dialog.isStopRequested(), ToolDetectionService.DEFAULT_BUDGET_MS);
+                } finally {
+                    // Not onFinished(): that runs in the settings' modality, i.e. only after the dialog closes
+                    ApplicationManager.getApplication().invokeLater(dialog::scanFinished, ModalityState.any());
                 }
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(mainPanel, "Detection failed: " + ex.getMessage(), "Error",
-                        JOptionPane.ERROR_MESSAGE);
-                ex.printStackTrace();
-            } finally {
+            }
+
+            @Override
+            public void onFinished() {
                 detectButton.setEnabled(true);
                 detectButton.setText("Detect Tools");
             }
-        });
+        }.queue();
+
+        if (!dialog.showAndGet()) {
+            return;
+        }
+        List<ExternalTool> selectedTools = dialog.getSelectedTools();
+        for (ExternalTool tool : selectedTools) {
+            workingTools.add(tool);
+            listModel.addElement(tool);
+        }
+        if (!selectedTools.isEmpty()) {
+            toolList.setSelectedIndex(workingTools.size() - 1);
+            isModified = true;
+        }
+        String updateMsg = updatedCount[0] == 0 ? ""
+                : String.format(" Updated %d existing tool%s.", updatedCount[0], updatedCount[0] == 1 ? "" : "s");
+        String message = String.format("Successfully added %d tool%s.%s", selectedTools.size(),
+                selectedTools.size() == 1 ? "" : "s", updateMsg);
+        JOptionPane.showMessageDialog(mainPanel, message, "Tool Detection Complete",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * 检测到的工具：已配置的更新路径，其余加入选择对话框
+     *
+     * @return 1 if an existing tool's path was updated
+     */
+    private int addDetectedTool(ToolSelectionDialog dialog, DetectedTool tool) {
+        for (ExternalTool existing : workingTools) {
+            if (existing.getName().equalsIgnoreCase(tool.getName())) {
+                if (tool.getDetectedPath().equals(existing.getExecutablePath())) {
+                    return 0;
+                }
+                existing.setExecutablePath(tool.getDetectedPath());
+                isModified = true;
+                toolList.repaint();
+                dialog.addUpdatedTool(tool);
+                return 1;
+            }
+        }
+        dialog.addNewTool(tool);
+        return 0;
     }
 
 }
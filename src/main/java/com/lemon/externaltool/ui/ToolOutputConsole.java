@@ -0,0 +1,197 @@
+package com.lemon.externaltool.ui;
+
+import com.intellij.execution.filters.TextConsoleBuilder;
+import com.intellij.execution.filters.TextConsoleBuilderFactory;
+import com.intellij.execution.ui.ConsoleView;
+import com.intellij.execution.ui.ConsoleViewContentType;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.ui.content.ContentManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.lemon.externaltool.core.LaunchedProcess;
+import com.lemon.externaltool.core.OutputRingBuffer;
+import com.lemon.externaltool.core.ProcessLauncher;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tool Output Console
+ * 单次运行的输出控制台（"External Tools" 工具窗口中的一个标签页）
+ *
+ * The reader thread only appends to an {@link OutputRingBuffer}; a timer moves what accumulated
+ * to the console at most every {@value #FLUSH_INTERVAL_MS} ms with a single EDT event, so a tool
+ * printing 100k lines costs a handful of EDT events. If the IDE falls behind, the oldest pending
+ * output is dropped and a marker is printed. The console view itself is bounded by the IDE's
+ * console cycle buffer setting.
+ */
+public final class ToolOutputConsole implements ProcessLauncher.OutputListener {
+
+    private static final Logger LOG = Logger.getInstance(ToolOutputConsole.class);
+
+    public static final String TOOL_WINDOW_ID = "External Tools";
+
+    // Pending chars per run between the reader thread and the EDT
+    private static final int BUFFER_CAPACITY = 1024 * 1024;
+    private static final long FLUSH_INTERVAL_MS = 100;
+    // Oldest tabs are closed beyond this
+    private static final int MAX_TABS = 10;
+
+    private final Project project;
+    private final String title;
+    private final List<String> baseDirs;
+    private final OutputRingBuffer buffer = new OutputRingBuffer(BUFFER_CAPACITY);
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final ScheduledFuture<?> flusher;
+
+    // Created on the EDT
+    private ConsoleView console;
+    private volatile boolean closed;
+
+    private ToolOutputConsole(@NotNull Project project, @NotNull String title, @NotNull List<String> baseDirs) {
+        this.project = project;
+        this.title = title;
+        this.baseDirs = baseDirs;
+        ApplicationManager.getApplication().invokeLater(this::createTab, ModalityState.any());
+        this.flusher = AppExecutorUtil.getAppScheduledExecutorService()
+                .scheduleWithFixedDelay(this::queueFlush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 打开新的输出标签页；可在任意线程调用
+     *
+     * @param baseDirs directories relative file:line links are resolved against
+     */
+    @NotNull
+    public static ToolOutputConsole open(@NotNull Project project, @NotNull String title,
+            @NotNull List<String> baseDirs) {
+        return new ToolOutputConsole(project, title, baseDirs);
+    }
+
+    @Override
+    public void onOutput(@NotNull String text) {
+        if (!closed) {
+            buffer.append(text);
+        }
+    }
+
+    /**
+     * 进程退出后输出剩余内容和退出码
+     */
+    public void attach(@NotNull LaunchedProcess process) {
+        process.onExit().thenAccept(exitCode -> finish("Process finished with exit code " + exitCode));
+    }
+
+    /**
+     * 进程未能启动
+     */
+    public void failed(@NotNull String message) {
+        finish("Failed to start: " + message);
+    }
+
+    private void finish(@NotNull String status) {
+        flusher.cancel(false);
+        // Queued after createTab and any pending flush, so it prints last
+        ApplicationManager.getApplication().invokeLater(() -> {
+            flush();
+            if (console != null) {
+                console.print("\n" + status + "\n", ConsoleViewContentType.SYSTEM_OUTPUT);
+            }
+        }, ModalityState.any());
+    }
+
+    private void queueFlush() {
+        if (closed) {
+            flusher.cancel(false);
+            return;
+        }
+        // At most one flush event in the EDT queue per run
+        if (flushQueued.compareAndSet(false, true)) {
+            ApplicationManager.getApplication().invokeLater(() -> {
+                flushQueued.set(false);
+                flush();
+            }, ModalityState.any());
+        }
+    }
+
+    private void flush() {
+        if (console == null || closed) {
+            return;
+        }
+        OutputRingBuffer.Chunk chunk = buffer.take();
+        if (chunk == null) {
+            return;
+        }
+        if (chunk.getDroppedBefore() > 0) {
+            console.print("\n... " + chunk.getDroppedBefore() + " characters of output dropped ...\n",
+                    ConsoleViewContentType.SYSTEM_OUTPUT);
+        }
+        console.print(chunk.getText(), ConsoleViewContentType.NORMAL_OUTPUT);
+    }
+
+    private void createTab() {
+        if (project.isDisposed()) {
+            closed = true;
+            return;
+        }
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(TOOL_WINDOW_ID);
+        if (toolWindow == null) {
+            LOG.warn("Tool window '" + TOOL_WINDOW_ID + "' is not registered, output of " + title + " is dropped");
+            closed = true;
+            return;
+        }
+
+        TextConsoleBuilder builder = TextConsoleBuilderFactory.getInstance().createBuilder(project);
+        builder.setViewer(true);
+        builder.addFilter(new FileLinkFilter(project, baseDirs));
+        ConsoleView view = builder.getConsole();
+
+        ContentFactory contentFactory = ApplicationManager.getApplication().getService(ContentFactory.class);
+        Content content = contentFactory.createContent(view.getComponent(), title, false);
+        content.setCloseable(true);
+        content.setDisposer(() -> {
+            closed = true;
+            Disposer.dispose(view);
+        });
+
+        ContentManager contentManager = toolWindow.getContentManager();
+        contentManager.addContent(content);
+        trimTabs(contentManager);
+        contentManager.setSelectedContent(content);
+        console = view;
+
+        toolWindow.setAvailable(true);
+        toolWindow.activate(null, false);
+    }
+
+    /**
+     * 关闭最旧的输出标签页，保留不可关闭的标签页（如 "Queue"）
+     */
+    private static void trimTabs(ContentManager contentManager) {
+        int outputTabs = 0;
+        for (Content tab : contentManager.getContents()) {
+            if (tab.isCloseable()) {
+                outputTabs++;
+            }
+        }
+        for (Content tab : contentManager.getContents()) {
+            if (outputTabs <= MAX_TABS) {
+                break;
+            }
+            if (tab.isCloseable()) {
+                contentManager.removeContent(tab, true);
+                outputTabs--;
+            }
+        }
+    }
+}
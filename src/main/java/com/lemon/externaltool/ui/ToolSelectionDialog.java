@@ -15,37 +15,122 @@ import java.util.stream.Collectors;
 
 /**
  * Dialog for selecting which detected tools to add
+ *
+ * Can be opened while detection is still running: rows are appended as tools are found, so
+ * the user can start selecting right away. All methods are called on the EDT.
  */
 public class ToolSelectionDialog extends DialogWrapper {
 
-    private final List<DetectedTool> newTools;
-    private final List<DetectedTool> updatedTools;
+    private final List<DetectedTool> newTools = new ArrayList<>();
+    private final List<DetectedTool> updatedTools = new ArrayList<>();
     private final ToolTableModel tableModel;
     private JTable toolTable;
     private JCheckBox enableAllCheckBox;
     private JLabel summaryLabel;
+    private JPanel updatedPanel;
+    private JLabel updatedLabel;
+    private JProgressBar progressBar;
+    private JButton stopButton;
+    private boolean scanning;
+    private volatile boolean stopRequested;
 
-    public ToolSelectionDialog(List<DetectedTool> newTools, List<DetectedTool> updatedTools) {
+    /**
+     * Dialog for a scan that is still running; feed it with {@link #addNewTool},
+     * {@link #addUpdatedTool} and finish with {@link #scanFinished}
+     */
+    public ToolSelectionDialog() {
         super(true);
-        this.newTools = newTools;
-        this.updatedTools = updatedTools;
         this.tableModel = new ToolTableModel(newTools);
+        this.scanning = true;
 
         setTitle("Tool Detection - Add New Tools");
         init();
         updateSummary();
     }
 
+    public ToolSelectionDialog(List<DetectedTool> newTools, List<DetectedTool> updatedTools) {
+        this();
+        newTools.forEach(this::addNewTool);
+        updatedTools.forEach(this::addUpdatedTool);
+        scanFinished();
+    }
+
+    /**
+     * Append a detected tool that is not configured yet
+     */
+    public void addNewTool(DetectedTool tool) {
+        newTools.add(tool);
+        tableModel.rowAdded();
+        updateSummary();
+    }
+
+    /**
+     * Record a configured tool whose path was updated
+     */
+    public void addUpdatedTool(DetectedTool tool) {
+        updatedTools.add(tool);
+        StringBuilder updatedText = new StringBuilder("<html>");
+        for (DetectedTool updated : updatedTools) {
+            updatedText.append("• ").append(updated.getName()).append(" (path updated)<br/>");
+        }
+        updatedText.append("</html>");
+        updatedLabel.setText(updatedText.toString());
+        updatedPanel.setVisible(true);
+    }
+
+    public void setProgress(int done, int total) {
+        progressBar.setIndeterminate(total == 0);
+        progressBar.setMaximum(Math.max(1, total));
+        progressBar.setValue(done);
+        progressBar.setString(total == 0 ? "Loading registry..." : "Checked " + done + " of " + total);
+    }
+
+    public void scanFinished() {
+        scanning = false;
+        progressBar.setVisible(false);
+        stopButton.setVisible(false);
+        updateSummary();
+    }
+
+    /**
+     * The user stopped the scan or closed the dialog
+     */
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    @Override
+    protected void dispose() {
+        stopRequested = true;
+        super.dispose();
+    }
+
     @Nullable
     @Override
     protected JComponent createCenterPanel() {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
         panel.setPreferredSize(new Dimension(700, 500));
 
-        // Top: Summary
+        // Top: Summary and scan progress
+        JPanel topPanel = new JPanel(new BorderLayout(10, 0));
         summaryLabel = new JLabel();
         summaryLabel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
-        panel.add(summaryLabel, BorderLayout.NORTH);
+        topPanel.add(summaryLabel, BorderLayout.CENTER);
+
+        JPanel progressPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Loading registry...");
+        stopButton = new JButton("Stop");
+        stopButton.addActionListener(e -> {
+            stopRequested = true;
+            stopButton.setEnabled(false);
+        });
+        progressPanel.add(progressBar);
+        progressPanel.add(stopButton);
+        topPanel.add(progressPanel, BorderLayout.EAST);
+        panel.add(topPanel, BorderLayout.NORTH);
 
         // Center: Tool table
         toolTable = new JTable(tableModel);
@@ -91,21 +176,13 @@ public class ToolSelectionDialog extends DialogWrapper {
         // Bottom: Options and buttons
         JPanel bottomPanel = new JPanel(new BorderLayout());
 
-        // Updated tools info
-        if (!updatedTools.isEmpty()) {
-            JPanel updatedPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-            updatedPanel.setBorder(BorderFactory.createTitledBorder("Updated Existing Tools"));
-
-            StringBuilder updatedText = new StringBuilder("<html>");
-            for (DetectedTool tool : updatedTools) {
-                updatedText.append("• ").append(tool.getName()).append(" (path updated)<br/>");
-            }
-            updatedText.append("</html>");
-
-            JLabel updatedLabel = new JLabel(updatedText.toString());
-            updatedPanel.add(updatedLabel);
-            bottomPanel.add(updatedPanel, BorderLayout.NORTH);
-        }
+        // Updated tools info, shown once the first one is found
+        updatedPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        updatedPanel.setBorder(BorderFactory.createTitledBorder("Updated Existing Tools"));
+        updatedLabel = new JLabel();
+        updatedPanel.add(updatedLabel);
+        updatedPanel.setVisible(false);
+        bottomPanel.add(updatedPanel, BorderLayout.NORTH);
 
         // Options
         JPanel optionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -145,9 +222,13 @@ public class ToolSelectionDialog extends DialogWrapper {
     private void updateSummary() {
         int selected = tableModel.getSelectedCount();
         int total = newTools.size();
+        if (!scanning && total == 0) {
+            summaryLabel.setText("<html><b>No new tools detected. All available tools are already configured.</b></html>");
+            return;
+        }
         summaryLabel.setText(String.format(
-                "<html><b>Detected %d new tool%s (%d selected)</b></html>",
-                total, total == 1 ? "" : "s", selected));
+                "<html><b>%s %d new tool%s (%d selected)</b></html>",
+                scanning ? "Scanning... found" : "Detected", total, total == 1 ? "" : "s", selected));
     }
 
     /**
@@ -165,9 +246,8 @@ public class ToolSelectionDialog extends DialogWrapper {
                 tool.setExecutablePath(detected.getDetectedPath());
                 tool.setEnabled(enableAll);
 
-                // Set extensions
-                List<String> extensions = detected.getDefinition().getExtensions();
-                tool.setSupportedExtensions(extensions != null ? extensions : new ArrayList<>());
+                // Set extensions and handoff command
+                detected.getDefinition().applyTo(tool);
 
                 tools.add(tool);
             }
@@ -182,16 +262,21 @@ public class ToolSelectionDialog extends DialogWrapper {
     private class ToolTableModel extends AbstractTableModel {
         private final String[] columnNames = { "", "Tool Name", "Path", "Extensions" };
         private final List<DetectedTool> tools;
-        private final boolean[] selected;
+        private final List<Boolean> selected = new ArrayList<>();
 
         public ToolTableModel(List<DetectedTool> tools) {
             this.tools = tools;
-            this.selected = new boolean[tools.size()];
+        }
 
+        /**
+         * The last tool in the list was appended; rows are only ever added at the end, so the
+         * table keeps its selection and any checkbox being edited
+         */
+        public void rowAdded() {
+            int row = tools.size() - 1;
             // Smart pre-selection: select tools with priority >= 8
-            for (int i = 0; i < tools.size(); i++) {
-                selected[i] = tools.get(i).getDefinition().getPriority() >= 8;
-            }
+            selected.add(isRecommended(row));
+            fireTableRowsInserted(row, row);
         }
 
         @Override
@@ -225,7 +310,7 @@ public class ToolSelectionDialog extends DialogWrapper {
 
             switch (columnIndex) {
                 case 0:
-                    return selected[rowIndex];
+                    return selected.get(rowIndex);
                 case 1:
                     return tool.getName();
                 case 2:
@@ -244,14 +329,14 @@ public class ToolSelectionDialog extends DialogWrapper {
         @Override
         public void setValueAt(Object value, int rowIndex, int columnIndex) {
             if (columnIndex == 0) {
-                selected[rowIndex] = (Boolean) value;
+                selected.set(rowIndex, (Boolean) value);
                 fireTableCellUpdated(rowIndex, columnIndex);
                 updateSummary();
             }
         }
 
         public boolean isSelected(int row) {
-            return selected[row];
+            return selected.get(row);
         }
 
         public boolean isRecommended(int row) {
@@ -268,15 +353,15 @@ public class ToolSelectionDialog extends DialogWrapper {
         }
 
         public void selectAll(boolean select) {
-            for (int i = 0; i < selected.length; i++) {
-                selected[i] = select;
+            for (int i = 0; i < selected.size(); i++) {
+                selected.set(i, select);
             }
             fireTableDataChanged();
         }
 
         public void selectPopular() {
             for (int i = 0; i < tools.size(); i++) {
-                selected[i] = isRecommended(i);
+                selected.set(i, isRecommended(i));
             }
             fireTableDataChanged();
         }
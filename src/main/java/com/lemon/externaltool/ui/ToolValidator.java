@@ -1,9 +1,13 @@
 package com.lemon.externaltool.ui;
 
+import com.lemon.externaltool.core.CommandTemplate;
+import com.lemon.externaltool.core.MacroResolver;
+import com.lemon.externaltool.core.TemplateSyntaxException;
 import com.lemon.externaltool.model.ExternalTool;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
+import java.util.Locale;
 
 /**
  * Tool Validator
@@ -27,6 +31,13 @@ public class ToolValidator {
         public static ValidationResult error(String message) {
             return new ValidationResult(false, message);
         }
+
+        /**
+         * 配置可用，但有值得提示的问题
+         */
+        public static ValidationResult warning(String message) {
+            return new ValidationResult(true, message);
+        }
     }
 
     /**
@@ -46,6 +57,61 @@ public class ToolValidator {
         // 但为了企业级稳健性，我们可以给出警告，或者在UI层面提示。
         // 这里我们进行基本检查。
 
+        // 命令模板在配置时编译，语法错误直接提示而不是等到启动时失败
+        CommandTemplate template;
+        CommandTemplate handoff;
+        try {
+            template = tool.getCompiledTemplate();
+        } catch (TemplateSyntaxException e) {
+            return ValidationResult.error("Command template: " + e.getMessage());
+        }
+        try {
+            handoff = tool.getCompiledHandoffTemplate();
+        } catch (TemplateSyntaxException e) {
+            return ValidationResult.error("Handoff command: " + e.getMessage());
+        }
+
+        // 未知的 {name} 按字面传给工具；与已知宏相近时多半是拼写错误
+        String typo = likelyTypo(template);
+        if (typo == null && handoff != null) {
+            typo = likelyTypo(handoff);
+        }
+        if (typo != null) {
+            return ValidationResult.warning(typo);
+        }
+
         return ValidationResult.ok();
     }
+
+    private static String likelyTypo(CommandTemplate template) {
+        for (String name : template.getUnknownMacros()) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            for (String known : MacroResolver.getKnownMacros()) {
+                if (distance(lower, known.toLowerCase(Locale.ROOT)) <= (known.length() > 4 ? 2 : 1)) {
+                    return "{" + name + "} is not a macro and is passed literally. Did you mean {" + known + "}?";
+                }
+            }
+        }
+        return null;
+    }
+
+    // Levenshtein distance; macro names are short
+    private static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
 }
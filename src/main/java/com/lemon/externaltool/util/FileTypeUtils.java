@@ -15,7 +15,15 @@ public class FileTypeUtils {
      */
     @Nullable
     public static String getFileExtension(@NotNull VirtualFile file) {
-        String name = file.getName();
+        return getFileExtension(file.getName());
+    }
+
+    /**
+     * 获取文件名或路径的扩展名（带点）
+     */
+    @Nullable
+    public static String getFileExtension(@NotNull String name) {
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
         int lastDot = name.lastIndexOf('.');
         if (lastDot > 0 && lastDot < name.length() - 1) {
             return name.substring(lastDot);
@@ -5,7 +5,11 @@ import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.lemon.externaltool.core.MacroResolver;
+import com.lemon.externaltool.core.ProcessLauncher;
+import com.lemon.externaltool.core.TemplateSyntaxException;
 import com.lemon.externaltool.model.ExternalTool;
+import com.lemon.externaltool.service.ExecutableValidationCache;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
@@ -20,6 +24,7 @@ import java.util.List;
 public class ProcessExecutor {
     
     private static final Logger LOG = Logger.getInstance(ProcessExecutor.class);
+    private static final MacroResolver MACRO_RESOLVER = new MacroResolver();
     
     /**
      * 使用指定工具打开文件
@@ -29,22 +34,18 @@ public class ProcessExecutor {
                                     Project project) throws IOException {
         
         String executablePath = tool.getExecutablePath();
-        File executable = new File(executablePath);
         
         // 验证可执行文件是否存在
-        if (!executable.exists()) {
+        if (!ExecutableValidationCache.getInstance().get(executablePath).exists()) {
             throw new IOException("Executable not found: " + executablePath);
         }
         
         // 构建命令
         List<String> command = buildCommand(tool, filePath);
         
-        LOG.info("Executing command: " + String.join(" ", command));
-        
         try {
-            // 执行命令
-            ProcessBuilder processBuilder = new ProcessBuilder(command);
-            processBuilder.start();
+            // 执行命令（共享启动后端，输出由系统丢弃，避免管道写满阻塞）
+            ProcessLauncher.getInstance().launch(command, tool.getLaunchPolicy());
             
             // 显示成功通知
             showSuccessNotification(project, tool.getName(), filePath);
@@ -58,88 +59,28 @@ public class ProcessExecutor {
     /**
      * 构建执行命令
      */
-    private static List<String> buildCommand(@NotNull ExternalTool tool, @NotNull String filePath) {
-        List<String> command = new ArrayList<>();
+    private static List<String> buildCommand(@NotNull ExternalTool tool, @NotNull String filePath) throws IOException {
         String executablePath = tool.getExecutablePath();
-        String commandTemplate = tool.getCommandTemplate();
         
         // 判断操作系统
         boolean isMac = System.getProperty("os.name").toLowerCase().contains("mac");
-        boolean isWindows = System.getProperty("os.name").toLowerCase().contains("win");
         
         // macOS应用需要使用open命令
         if (isMac && executablePath.endsWith(".app")) {
+            List<String> command = new ArrayList<>();
             command.add("open");
             command.add("-a");
             command.add(executablePath);
             command.add(filePath);
-        } 
-        // Windows和Linux直接执行
-        else {
-            if (commandTemplate != null && !commandTemplate.isEmpty()) {
-                // 使用自定义命令模板
-                String expandedCommand = expandCommandTemplate(commandTemplate, executablePath, filePath);
-                // 简单的分词处理（处理引号）
-                command.addAll(parseCommand(expandedCommand));
-            } else {
-                // 默认命令格式
-                command.add(executablePath);
-                command.add(filePath);
-            }
+            return command;
         }
         
-        return command;
-    }
-    
-    /**
-     * 扩展命令模板
-     */
-    private static String expandCommandTemplate(String template, String execPath, String filePath) {
-        String result = template;
-        
-        // 替换占位符
-        result = result.replace("{path}", execPath);
-        result = result.replace("{file}", filePath);
-        
-        // 获取文件所在目录
-        File file = new File(filePath);
-        String fileDir = file.getParent();
-        String fileName = file.getName();
-        
-        result = result.replace("{fileDir}", fileDir != null ? fileDir : "");
-        result = result.replace("{fileName}", fileName);
-        
-        return result;
-    }
-    
-    /**
-     * 解析命令字符串（处理引号）
-     */
-    private static List<String> parseCommand(String command) {
-        List<String> result = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean inQuotes = false;
-        
-        for (int i = 0; i < command.length(); i++) {
-            char c = command.charAt(i);
-            
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ' ' && !inQuotes) {
-                if (current.length() > 0) {
-                    result.add(current.toString());
-                    current = new StringBuilder();
-                }
-            } else {
-                current.append(c);
-            }
-        }
-        
-        if (current.length() > 0) {
-            result.add(current.toString());
+        // Windows和Linux直接执行：填充预编译模板（空模板即默认 "{path}" "{file}"）
+        try {
+            return MACRO_RESOLVER.buildArgv(tool.getCompiledTemplate(), executablePath, filePath);
+        } catch (TemplateSyntaxException e) {
+            throw new IOException("Invalid command template: " + e.getMessage(), e);
         }
-        
-        return result;
     }
     
     /**
@@ -178,14 +119,15 @@ public class ProcessExecutor {
      */
     public static boolean testTool(@NotNull ExternalTool tool) {
         String executablePath = tool.getExecutablePath();
-        File executable = new File(executablePath);
+        ExecutableValidationCache.ExecutableStatus status =
+                ExecutableValidationCache.getInstance().get(executablePath);
         
         // macOS应用包
         if (executablePath.endsWith(".app")) {
-            return executable.exists() && executable.isDirectory();
+            return status.isDirectory();
         }
         
         // 普通可执行文件
-        return executable.exists() && executable.canExecute();
+        return status.exists() && status.canExecute();
     }
 }
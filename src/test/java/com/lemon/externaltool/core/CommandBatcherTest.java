@@ -0,0 +1,99 @@
+package com.lemon.externaltool.core;
+
+import com.lemon.externaltool.model.MultiFileMode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class CommandBatcherTest {
+
+    private static List<String> files(int count) {
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            files.add("/tmp/file" + i + ".txt");
+        }
+        return files;
+    }
+
+    @Test
+    public void fitsEverythingInOneBatchWhenUnderTheLimit() {
+        CommandBatcher batcher = new CommandBatcher(new MacroResolver(), 1 << 20);
+        List<CommandBatcher.Batch> batches = batcher.buildBatches(Arrays.asList("open", "-a", "App"), files(3));
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList("open", "-a", "App", "/tmp/file0.txt", "/tmp/file1.txt", "/tmp/file2.txt"),
+                batches.get(0).getCommand());
+        assertEquals(3, batches.get(0).getFileCount());
+    }
+
+    @Test
+    public void splitsAtTheLimitKeepingEveryFileOnce() {
+        // Each file argument costs well over 10 chars, so a 60 char limit holds only a few
+        CommandBatcher batcher = new CommandBatcher(new MacroResolver(), 60);
+        List<String> files = files(10);
+        List<CommandBatcher.Batch> batches = batcher.buildBatches(Collections.singletonList("tool"), files);
+        assertTrue(batches.size() > 1);
+
+        List<String> covered = new ArrayList<>();
+        for (CommandBatcher.Batch batch : batches) {
+            assertEquals("tool", batch.getCommand().get(0));
+            assertEquals(batch.getFiles(), batch.getCommand().subList(1, batch.getCommand().size()));
+            covered.addAll(batch.getFiles());
+        }
+        assertEquals(files, covered);
+    }
+
+    @Test
+    public void oversizedFileStillGetsItsOwnBatch() {
+        CommandBatcher batcher = new CommandBatcher(new MacroResolver(), 10);
+        List<CommandBatcher.Batch> batches = batcher.buildBatches(Collections.singletonList("tool"), files(2));
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(0).getFileCount());
+        assertEquals(1, batches.get(1).getFileCount());
+    }
+
+    @Test
+    public void repeatsTheFileSpanBetweenHeadAndTail() throws Exception {
+        CommandBatcher batcher = new CommandBatcher(new MacroResolver(), 1 << 20);
+        // The span runs from the first to the last argument that references the file
+        CommandTemplate template = CommandTemplate.compile("\"{path}\" --new \"{file}\" --title={fileName} --wait");
+        List<CommandBatcher.Batch> batches = batcher.buildBatches(template, "/bin/tool", Arrays.asList("/x/a", "/x/b"),
+                MultiFileMode.REPEAT, MacroContext.empty());
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList("/bin/tool", "--new", "/x/a", "--title=a", "/x/b", "--title=b", "--wait"),
+                batches.get(0).getCommand());
+    }
+
+    @Test
+    public void separateModeBuildsNoBatches() throws Exception {
+        CommandBatcher batcher = new CommandBatcher(new MacroResolver(), 1 << 20);
+        CommandTemplate template = CommandTemplate.compile("\"{path}\" \"{file}\"");
+        assertTrue(batcher.buildBatches(template, "/bin/tool", files(2), MultiFileMode.SEPARATE,
+                MacroContext.empty()).isEmpty());
+    }
+
+    @Test
+    public void argFileModeWritesOnePathPerLine() throws IOException, TemplateSyntaxException {
+        CommandBatcher batcher = new CommandBatcher(new MacroResolver(), 1 << 20);
+        CommandTemplate template = CommandTemplate.compile("\"{path}\" \"{file}\"");
+        List<CommandBatcher.Batch> batches = batcher.buildBatches(template, "/bin/tool",
+                Arrays.asList("/a", "/with space"), MultiFileMode.ARGFILE, MacroContext.empty());
+        assertEquals(1, batches.size());
+        CommandBatcher.Batch batch = batches.get(0);
+        assertNotNull(batch.getArgFile());
+        try {
+            assertEquals(Arrays.asList("/bin/tool", "@" + batch.getArgFile()), batch.getCommand());
+            assertEquals(Arrays.asList("/a", "\"/with space\""), Files.readAllLines(batch.getArgFile()));
+        } finally {
+            Files.deleteIfExists(batch.getArgFile());
+        }
+    }
+}
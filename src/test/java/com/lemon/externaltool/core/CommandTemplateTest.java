@@ -0,0 +1,117 @@
+package com.lemon.externaltool.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CommandTemplateTest {
+
+    private static final CommandTemplate.MacroValues VALUES = macro -> "<" + macro + ">";
+
+    private static List<String> fill(String template) throws TemplateSyntaxException {
+        return fill(CommandTemplate.compile(template));
+    }
+
+    private static List<String> fill(CommandTemplate template) {
+        List<String> argv = new ArrayList<>();
+        template.fill(argv, VALUES);
+        return argv;
+    }
+
+    @Test
+    public void splitsOnWhitespaceAndExpandsMacros() throws TemplateSyntaxException {
+        assertEquals(Arrays.asList("<path>", "--goto", "<file>:<line>"), fill("{path}  --goto\t{file}:{line}"));
+    }
+
+    @Test
+    public void doubleQuotesGroupTextAndMayBeAdjacent() throws TemplateSyntaxException {
+        assertEquals(Arrays.asList("<path>", "--out=<fileDir>/a b"), fill("\"{path}\" --out=\"{fileDir}/a b\""));
+    }
+
+    @Test
+    public void expandedValuesAreNotRetokenized() throws TemplateSyntaxException {
+        List<String> argv = new ArrayList<>();
+        CommandTemplate.compile("\"{path}\" {file}").fill(argv, macro -> "/with space/\"quoted\"");
+        assertEquals(Arrays.asList("/with space/\"quoted\"", "/with space/\"quoted\""), argv);
+    }
+
+    @Test
+    public void emptyQuotedArgumentIsKept() throws TemplateSyntaxException {
+        assertEquals(Arrays.asList("a", "", "b"), fill("a \"\" b"));
+    }
+
+    @Test
+    public void emptyTemplateHasNoArguments() throws TemplateSyntaxException {
+        assertEquals(Collections.emptyList(), fill("   "));
+    }
+
+    @Test
+    public void doubledBracesAreLiteral() throws TemplateSyntaxException {
+        assertEquals(Arrays.asList("{file}", "}{"), fill("{{file}} }}{{"));
+    }
+
+    @Test
+    public void unknownNamesInBracesStayLiteral() throws TemplateSyntaxException {
+        CommandTemplate template = CommandTemplate.compile("jq {name} {a:1} \"{file}\"");
+        assertEquals(Arrays.asList("jq", "{name}", "{a:1}", "<file>"), fill(template));
+        assertEquals(Collections.singleton("name"), template.getUnknownMacros());
+        assertEquals(Collections.singleton("file"), template.getMacros());
+    }
+
+    @Test
+    public void singleQuotesAreOrdinaryByDefault() throws TemplateSyntaxException {
+        CommandTemplate template = CommandTemplate.compile("echo it's {file}");
+        assertFalse(template.isSingleQuotes());
+        assertEquals(Arrays.asList("echo", "it's", "<file>"), fill(template));
+    }
+
+    @Test
+    public void singleQuotesGroupWhenEnabled() throws TemplateSyntaxException {
+        CommandTemplate template = CommandTemplate.compile("sh -c 'cat {file} | wc'", true);
+        assertEquals(Arrays.asList("sh", "-c", "cat <file> | wc"), fill(template));
+    }
+
+    @Test
+    public void environmentMacrosAreRecognized() throws TemplateSyntaxException {
+        assertEquals(Collections.singletonList("<env:EDITOR>"), fill("{env:EDITOR}"));
+    }
+
+    @Test
+    public void unterminatedQuoteIsAnError() {
+        try {
+            CommandTemplate.compile("\"{path}");
+            fail("Expected TemplateSyntaxException");
+        } catch (TemplateSyntaxException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void unclosedKnownMacroIsAnError() {
+        try {
+            CommandTemplate.compile("{path} {file");
+            fail("Expected TemplateSyntaxException");
+        } catch (TemplateSyntaxException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void fillsArgumentRange() throws TemplateSyntaxException {
+        CommandTemplate template = CommandTemplate.compile("{path} -a {file} -b");
+        assertEquals(4, template.getArgCount());
+        assertTrue(template.argReferences(2, MacroResolver.NAME_FILE));
+        assertFalse(template.argReferences(1, MacroResolver.NAME_FILE));
+        List<String> argv = new ArrayList<>();
+        template.fill(argv, 1, 3, VALUES);
+        assertEquals(Arrays.asList("-a", "<file>"), argv);
+    }
+}
@@ -0,0 +1,82 @@
+package com.lemon.externaltool.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Launch Benchmark
+ * 比较直接启动与启动助手两种后端的启动延迟（p50/p99）
+ *
+ * Usage: {@code ./gradlew launchBenchmark -Pargs="[launches] [heapBallastMb]"}. Lives in the test
+ * source set so it is not packaged with the plugin. The ballast keeps a large live heap to
+ * approximate an IDE JVM.
+ * Latency is measured until the PID is known, i.e. what a user waits for after clicking.
+ */
+public final class LaunchBenchmark {
+
+    private LaunchBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int launches = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int ballastMb = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+        // Touch every page so the ballast is resident, like a warmed-up IDE heap
+        List<byte[]> ballast = new ArrayList<>();
+        for (int i = 0; i < ballastMb; i++) {
+            byte[] block = new byte[1024 * 1024];
+            for (int j = 0; j < block.length; j += 4096) {
+                block[j] = 1;
+            }
+            ballast.add(block);
+        }
+
+        List<String> command = System.getProperty("os.name").toLowerCase().contains("win")
+                ? Arrays.asList("cmd.exe", "/c", "exit")
+                : Collections.singletonList("true");
+
+        long[] direct = new long[launches];
+        for (int i = 0; i < launches; i++) {
+            long start = System.nanoTime();
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            Process process = pb.start();
+            direct[i] = System.nanoTime() - start;
+            process.waitFor();
+        }
+
+        LauncherHelper helper = LauncherHelper.start();
+        long[] viaHelper = new long[launches];
+        try {
+            // Warm-up: the first request also waits for the helper JVM to boot
+            helper.launch(command, null, Collections.emptyMap()).onExit().get();
+            for (int i = 0; i < launches; i++) {
+                long start = System.nanoTime();
+                LaunchedProcess process = helper.launch(command, null, Collections.emptyMap());
+                viaHelper[i] = System.nanoTime() - start;
+                process.onExit().get();
+            }
+        } finally {
+            helper.close();
+        }
+
+        System.out.println("launches=" + launches + ", heap ballast=" + ballastMb + "MB (" + ballast.size() + " blocks)");
+        report("direct", direct);
+        report("helper", viaHelper);
+    }
+
+    private static void report(String name, long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-7s p50=%.2fms p99=%.2fms max=%.2fms%n", name,
+                percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
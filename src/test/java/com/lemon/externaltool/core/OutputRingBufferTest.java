@@ -0,0 +1,67 @@
+package com.lemon.externaltool.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class OutputRingBufferTest {
+
+    @Test
+    public void emptyBufferHasNothingToTake() {
+        assertNull(new OutputRingBuffer(8).take());
+    }
+
+    @Test
+    public void takesAppendedTextAndClears() {
+        OutputRingBuffer buffer = new OutputRingBuffer(8);
+        buffer.append("ab");
+        buffer.append("cd");
+        OutputRingBuffer.Chunk chunk = buffer.take();
+        assertEquals("abcd", chunk.getText());
+        assertEquals(0, chunk.getDroppedBefore());
+        assertNull(buffer.take());
+    }
+
+    @Test
+    public void wrapsAroundTheEnd() {
+        OutputRingBuffer buffer = new OutputRingBuffer(4);
+        buffer.append("abc");
+        buffer.append("de");
+        // "a" was overwritten; the kept text spans the end of the array
+        OutputRingBuffer.Chunk chunk = buffer.take();
+        assertEquals("bcde", chunk.getText());
+        assertEquals(1, chunk.getDroppedBefore());
+    }
+
+    @Test
+    public void oversizedAppendKeepsOnlyTheTail() {
+        OutputRingBuffer buffer = new OutputRingBuffer(4);
+        buffer.append("xy");
+        buffer.append("0123456789");
+        OutputRingBuffer.Chunk chunk = buffer.take();
+        assertEquals("6789", chunk.getText());
+        assertEquals(8, chunk.getDroppedBefore());
+    }
+
+    @Test
+    public void droppedCountIsResetByTake() {
+        OutputRingBuffer buffer = new OutputRingBuffer(2);
+        buffer.append("abc");
+        assertEquals(1, buffer.take().getDroppedBefore());
+        buffer.append("d");
+        OutputRingBuffer.Chunk chunk = buffer.take();
+        assertEquals("d", chunk.getText());
+        assertEquals(0, chunk.getDroppedBefore());
+    }
+
+    @Test
+    public void continuesCorrectlyAfterTakeFromAWrappedState() {
+        OutputRingBuffer buffer = new OutputRingBuffer(3);
+        buffer.append("abcd");
+        buffer.take();
+        buffer.append("ef");
+        buffer.append("g");
+        assertEquals("efg", buffer.take().getText());
+    }
+}
@@ -0,0 +1,75 @@
+package com.lemon.externaltool.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DetectionCacheTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void missingPathHasTheMissingSignature() {
+        DetectionCache.Signature signature = DetectionCache.Signature.of(temp.getRoot().toPath().resolve("nope"));
+        assertSame(DetectionCache.Signature.MISSING, signature);
+        assertTrue(signature.isMissing());
+    }
+
+    @Test
+    public void encodeDecodeRoundTrips() throws IOException {
+        Path file = temp.newFile("tool").toPath();
+        Files.write(file, new byte[]{1, 2, 3});
+        DetectionCache.Signature signature = DetectionCache.Signature.of(file);
+        assertFalse(signature.isMissing());
+        assertEquals(signature, DetectionCache.Signature.decode(signature.encode()));
+        assertEquals(signature.hashCode(), DetectionCache.Signature.decode(signature.encode()).hashCode());
+    }
+
+    @Test
+    public void fileKeyMayContainSeparators() {
+        // The file key is the last field and is kept verbatim
+        DetectionCache.Signature signature = DetectionCache.Signature.decode("F|1|2|(dev=1,ino=|3)");
+        assertEquals("F|1|2|(dev=1,ino=|3)", signature.encode());
+    }
+
+    @Test
+    public void changesInSizeOrMtimeChangeTheSignature() throws IOException {
+        Path file = temp.newFile("tool").toPath();
+        DetectionCache.Signature before = DetectionCache.Signature.of(file);
+
+        Files.write(file, new byte[]{1});
+        assertNotEquals(before, DetectionCache.Signature.of(file));
+
+        DetectionCache.Signature sized = DetectionCache.Signature.of(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 60_000));
+        assertNotEquals(sized, DetectionCache.Signature.of(file));
+    }
+
+    @Test
+    public void fileAndDirectoryDiffer() throws IOException {
+        DetectionCache.Signature dir = DetectionCache.Signature.of(temp.newFolder("d").toPath());
+        assertTrue(dir.encode().startsWith("D|"));
+        assertTrue(DetectionCache.Signature.of(temp.newFile("f").toPath()).encode().startsWith("F|"));
+    }
+
+    @Test
+    public void damagedTextDecodesToNull() {
+        assertNull(DetectionCache.Signature.decode(""));
+        assertNull(DetectionCache.Signature.decode("F|x|2|k"));
+        assertNull(DetectionCache.Signature.decode("FF|1|2|k"));
+        assertNull(DetectionCache.Signature.decode("F|1|2"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.RangeMarker;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+public class DocumentPatchTest extends BasePlatformTestCase {
+
+    private Document apply(String text, String original, String result, int baseOffset) {
+        Document document = EditorFactory.getInstance().createDocument(text);
+        DocumentPatch patch = DocumentPatch.compute(original, result, baseOffset);
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> patch.applyTo(document));
+        return document;
+    }
+
+    public void testIdenticalTextGivesEmptyPatch() {
+        assertTrue(DocumentPatch.compute("a\nb\n", "a\nb\n", 0).isEmpty());
+    }
+
+    public void testOnlyChangedLinesAreReplaced() {
+        String original = "one\ntwo\nthree\nfour\nfive\n";
+        String result = "one\nTWO\nthree\nfour\nFIVE\nsix\n";
+        DocumentPatch patch = DocumentPatch.compute(original, result, 0);
+        assertEquals(2, patch.size());
+        assertEquals(result, apply(original, original, result, 0).getText());
+    }
+
+    public void testUntouchedLinesKeepTheirMarkers() {
+        String original = "keep\nchange\nkeep too\n";
+        Document document = EditorFactory.getInstance().createDocument(original);
+        RangeMarker marker = document.createRangeMarker(original.indexOf("keep too"), original.indexOf("keep too") + 8);
+
+        DocumentPatch patch = DocumentPatch.compute(original, "keep\nchanged a lot\nkeep too\n", 0);
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> patch.applyTo(document));
+
+        assertTrue(marker.isValid());
+        assertEquals("keep too", document.getText().substring(marker.getStartOffset(), marker.getEndOffset()));
+    }
+
+    public void testOffsetsAreRelativeToTheFilteredRange() {
+        String header = "header\n";
+        String original = "b\na\n";
+        Document document = apply(header + original + "footer\n", original, "a\nb\n", header.length());
+        assertEquals("header\na\nb\nfooter\n", document.getText());
+    }
+
+    public void testDeletingEverything() {
+        assertEquals("", apply("x\ny\n", "x\ny\n", "", 0).getText());
+    }
+}
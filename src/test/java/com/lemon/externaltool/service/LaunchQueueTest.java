@@ -0,0 +1,141 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.openapi.util.Disposer;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.lemon.externaltool.model.ExternalTool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+public class LaunchQueueTest extends BasePlatformTestCase {
+
+    // Dispatch queued launches on the completing thread so the test stays synchronous
+    private static final Executor DIRECT = Runnable::run;
+
+    private LaunchQueue queue;
+    private ExternalTool tool;
+    private final List<String> started = new ArrayList<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        queue = new LaunchQueue(getProject());
+        Disposer.register(getTestRootDisposable(), queue);
+        tool = new ExternalTool("Limited", "/bin/limited");
+        tool.setMaxConcurrent(1);
+    }
+
+    private CompletableFuture<Void> submit(String name, int priority, CompletableFuture<?> task) {
+        return queue.submit(tool, name, priority, DIRECT, () -> {
+            started.add(name);
+            return task;
+        });
+    }
+
+    public void testFreeSlotRunsInline() {
+        CompletableFuture<Object> task = new CompletableFuture<>();
+        CompletableFuture<Void> done = submit("a", LaunchQueue.PRIORITY_BATCH, task);
+        assertEquals(List.of("a"), started);
+        assertTrue(queue.getPending().isEmpty());
+        assertFalse(done.isDone());
+        task.complete(null);
+        assertTrue(done.isDone());
+    }
+
+    public void testLaunchWaitsForSlotAndRunsWhenReleased() {
+        CompletableFuture<Object> first = new CompletableFuture<>();
+        submit("a", LaunchQueue.PRIORITY_BATCH, first);
+        CompletableFuture<Void> second = submit("b", LaunchQueue.PRIORITY_BATCH, CompletableFuture.completedFuture(null));
+
+        assertEquals(List.of("a"), started);
+        assertEquals(1, queue.getPending().size());
+        assertFalse(second.isDone());
+
+        first.complete(null);
+        assertEquals(List.of("a", "b"), started);
+        assertTrue(queue.getPending().isEmpty());
+        assertTrue(second.isDone());
+    }
+
+    public void testInteractiveLaunchesGoFirst() {
+        CompletableFuture<Object> first = new CompletableFuture<>();
+        submit("running", LaunchQueue.PRIORITY_BATCH, first);
+        submit("batch-1", LaunchQueue.PRIORITY_BATCH, new CompletableFuture<>());
+        submit("batch-2", LaunchQueue.PRIORITY_BATCH, new CompletableFuture<>());
+        submit("click", LaunchQueue.PRIORITY_INTERACTIVE, new CompletableFuture<>());
+
+        List<String> order = new ArrayList<>();
+        for (LaunchQueue.QueuedLaunch launch : queue.getPending()) {
+            order.add(launch.getDescription());
+        }
+        assertEquals(List.of("click", "batch-1", "batch-2"), order);
+
+        first.complete(null);
+        assertEquals(List.of("running", "click"), started);
+    }
+
+    public void testCancelledLaunchNeverRuns() {
+        CompletableFuture<Object> first = new CompletableFuture<>();
+        submit("a", LaunchQueue.PRIORITY_BATCH, first);
+        CompletableFuture<Void> queued = submit("b", LaunchQueue.PRIORITY_BATCH, CompletableFuture.completedFuture(null));
+
+        queue.getPending().get(0).cancel();
+        assertTrue(queue.getPending().isEmpty());
+        assertTrue(queued.isCompletedExceptionally());
+        try {
+            queued.get();
+            fail("Expected cancellation");
+        } catch (ExecutionException | InterruptedException e) {
+            fail("Expected cancellation, got " + e);
+        } catch (CancellationException expected) {
+            // expected
+        }
+
+        first.complete(null);
+        assertEquals(List.of("a"), started);
+    }
+
+    public void testFailedTaskReleasesSlot() {
+        CompletableFuture<Object> first = new CompletableFuture<>();
+        CompletableFuture<Void> failed = submit("a", LaunchQueue.PRIORITY_BATCH, first);
+        submit("b", LaunchQueue.PRIORITY_BATCH, CompletableFuture.completedFuture(null));
+
+        first.completeExceptionally(new IllegalStateException("spawn failed"));
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(List.of("a", "b"), started);
+    }
+
+    public void testThrowingTaskReleasesSlot() {
+        CompletableFuture<Void> failed = queue.submit(tool, "a", LaunchQueue.PRIORITY_BATCH, DIRECT, () -> {
+            throw new IllegalStateException("no executable");
+        });
+        assertTrue(failed.isCompletedExceptionally());
+        submit("b", LaunchQueue.PRIORITY_BATCH, new CompletableFuture<>());
+        assertEquals(List.of("b"), started);
+    }
+
+    public void testUnlimitedToolIsNeverQueued() {
+        tool.setMaxConcurrent(0);
+        for (int i = 0; i < 5; i++) {
+            submit("run-" + i, LaunchQueue.PRIORITY_BATCH, new CompletableFuture<>());
+        }
+        assertEquals(5, started.size());
+        assertTrue(queue.getPending().isEmpty());
+    }
+
+    public void testSlotsAreCountedPerTool() {
+        submit("a", LaunchQueue.PRIORITY_BATCH, new CompletableFuture<>());
+        ExternalTool other = new ExternalTool("Other", "/bin/other");
+        other.setMaxConcurrent(1);
+        queue.submit(other, "x", LaunchQueue.PRIORITY_BATCH, DIRECT, () -> {
+            started.add("x");
+            return new CompletableFuture<>();
+        });
+        assertEquals(List.of("a", "x"), started);
+        assertTrue(queue.getPending().isEmpty());
+    }
+}
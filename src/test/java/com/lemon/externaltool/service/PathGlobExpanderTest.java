@@ -0,0 +1,113 @@
+package com.lemon.externaltool.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PathGlobExpanderTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private Path touch(String relative) throws IOException {
+        Path file = temp.getRoot().toPath().resolve(relative);
+        Files.createDirectories(file.getParent());
+        return Files.createFile(file);
+    }
+
+    private String pattern(String relative) {
+        return temp.getRoot().toPath().resolve(relative).toString();
+    }
+
+    private static List<String> sorted(String... names) {
+        List<String> list = new ArrayList<>(Arrays.asList(names));
+        list.sort(PathGlobExpander.NEWEST_FIRST);
+        return list;
+    }
+
+    @Test
+    public void recognizesPatterns() {
+        assertTrue(PathGlobExpander.isPattern("/opt/idea-*/bin/idea.sh"));
+        assertTrue(PathGlobExpander.isPattern("/opt/**/x"));
+        assertTrue(PathGlobExpander.isPattern("/opt/tool-?"));
+        assertTrue(PathGlobExpander.isPattern("/opt/{a,b}"));
+        assertFalse(PathGlobExpander.isPattern("/usr/bin/code"));
+    }
+
+    @Test
+    public void digitRunsCompareNumericallyNewestFirst() {
+        assertEquals(Arrays.asList("idea-2024.10", "idea-2024.9", "idea-2023.3"),
+                sorted("idea-2024.9", "idea-2023.3", "idea-2024.10"));
+        // A longer version with the same prefix is newer
+        assertEquals(Arrays.asList("v1.2.1", "v1.2"), sorted("v1.2", "v1.2.1"));
+        // Leading zeros do not make a number larger
+        assertEquals(Arrays.asList("r10", "r009"), sorted("r009", "r10"));
+    }
+
+    @Test
+    public void nonPatternIsReturnedUnchecked() {
+        String path = pattern("does/not/exist");
+        assertEquals(Collections.singletonList(path), new PathGlobExpander().expand(path));
+    }
+
+    @Test
+    public void expandsSingleLevelWildcardNewestFirst() throws IOException {
+        touch("opt/idea-2024.9/bin/idea.sh");
+        touch("opt/idea-2024.10/bin/idea.sh");
+        touch("opt/other/bin/idea.sh");
+
+        List<String> matches = new PathGlobExpander().expand(pattern("opt/idea-*/bin/idea.sh"));
+        assertEquals(Arrays.asList(pattern("opt/idea-2024.10/bin/idea.sh"), pattern("opt/idea-2024.9/bin/idea.sh")),
+                matches);
+    }
+
+    @Test
+    public void literalSegmentsAfterAFanOutMustExist() throws IOException {
+        touch("opt/a/bin/tool");
+        Files.createDirectories(temp.getRoot().toPath().resolve("opt/b"));
+
+        assertEquals(Collections.singletonList(pattern("opt/a/bin/tool")),
+                new PathGlobExpander().expand(pattern("opt/*/bin/tool")));
+    }
+
+    @Test
+    public void recursiveWildcardIsDepthLimited() throws IOException {
+        touch("apps/bin/tool");
+        touch("apps/1/2/3/4/bin/tool");
+        touch("apps/1/2/3/4/5/bin/tool");
+
+        List<String> matches = new PathGlobExpander().expand(pattern("apps/**/bin/tool"));
+        assertTrue(matches.contains(pattern("apps/bin/tool")));
+        assertTrue(matches.contains(pattern("apps/1/2/3/4/bin/tool")));
+        assertFalse(matches.contains(pattern("apps/1/2/3/4/5/bin/tool")));
+    }
+
+    @Test
+    public void missingDirectoryYieldsNoMatches() {
+        assertTrue(new PathGlobExpander().expand(pattern("missing/*/tool")).isEmpty());
+    }
+
+    @Test
+    public void listingsAreReusedWithinOneExpander() throws IOException {
+        touch("opt/tool-1/run");
+        PathGlobExpander expander = new PathGlobExpander();
+        assertEquals(1, expander.expand(pattern("opt/tool-*/run")).size());
+
+        // Created after the first listing: the same expander (one scan) does not see it
+        touch("opt/tool-2/run");
+        assertEquals(1, expander.expand(pattern("opt/tool-*/run")).size());
+        assertEquals(2, new PathGlobExpander().expand(pattern("opt/tool-*/run")).size());
+    }
+}
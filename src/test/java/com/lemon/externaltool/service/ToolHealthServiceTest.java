@@ -0,0 +1,112 @@
+package com.lemon.externaltool.service;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.lemon.externaltool.model.ExternalTool;
+
+import java.io.File;
+
+public class ToolHealthServiceTest extends BasePlatformTestCase {
+
+    private ToolHealthService health;
+    private ExternalTool tool;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // A fresh instance, not the application service, so records do not leak between tests
+        health = new ToolHealthService();
+        File missing = new File(System.getProperty("java.io.tmpdir"), "missing-tool-" + getName());
+        tool = new ExternalTool("Broken", missing.getPath());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            health.dispose();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testHealthyToolHasNoRecord() {
+        assertTrue(health.allowsLaunch(tool));
+        assertNull(health.getHealth(tool));
+    }
+
+    public void testSingleFailureKeepsCircuitClosed() {
+        health.recordFailure(tool, "exit 1");
+        assertTrue(health.allowsLaunch(tool));
+        assertEquals(ToolHealthService.State.CLOSED, health.getHealth(tool).getState());
+        assertEquals(1, health.getHealth(tool).getConsecutiveFailures());
+    }
+
+    public void testConsecutiveFailuresOpenCircuit() {
+        health.recordFailure(tool, "exit 1");
+        health.recordFailure(tool, "exit 2");
+        ToolHealthService.Health record = health.getHealth(tool);
+        assertEquals(ToolHealthService.State.OPEN, record.getState());
+        assertEquals("exit 2", record.getLastError());
+        assertTrue(record.getRetryAtMillis() > System.currentTimeMillis());
+        assertFalse(health.allowsLaunch(tool));
+    }
+
+    public void testSuccessClosesCircuit() {
+        health.recordFailure(tool, "exit 1");
+        health.recordFailure(tool, "exit 1");
+        health.recordSuccess(tool);
+        assertNull(health.getHealth(tool));
+        assertTrue(health.allowsLaunch(tool));
+    }
+
+    public void testChangingExecutablePathResetsRecord() {
+        health.recordFailure(tool, "exit 1");
+        health.recordFailure(tool, "exit 1");
+        tool.setExecutablePath(tool.getExecutablePath() + "-fixed");
+        assertTrue(health.allowsLaunch(tool));
+        assertNull(health.getHealth(tool));
+    }
+
+    public void testFailedProbeKeepsCircuitOpenWithLongerBackoff() {
+        health.recordFailure(tool, "exit 1");
+        health.recordFailure(tool, "exit 1");
+        ToolHealthService.Health record = health.getHealth(tool);
+        long firstRetry = record.getRetryAtMillis();
+
+        health.probe(tool.getId(), record);
+        assertEquals(ToolHealthService.State.OPEN, record.getState());
+        assertEquals(3, record.getConsecutiveFailures());
+        assertTrue(record.getRetryAtMillis() > firstRetry);
+    }
+
+    public void testPassedProbeHalfOpensAndNextFailureReopens() throws Exception {
+        File executable = File.createTempFile("tool-health", ".sh");
+        executable.deleteOnExit();
+        assertTrue(executable.setExecutable(true));
+        tool.setExecutablePath(executable.getPath());
+
+        health.recordFailure(tool, "exit 1");
+        health.recordFailure(tool, "exit 1");
+        ToolHealthService.Health record = health.getHealth(tool);
+        health.probe(tool.getId(), record);
+        assertEquals(ToolHealthService.State.HALF_OPEN, record.getState());
+        assertTrue(health.allowsLaunch(tool));
+
+        // A half-open circuit reopens on the first failure
+        health.recordFailure(tool, "exit 1");
+        assertEquals(ToolHealthService.State.OPEN, record.getState());
+        assertFalse(health.allowsLaunch(tool));
+    }
+
+    public void testPassedProbeThenSuccessCloses() throws Exception {
+        File executable = File.createTempFile("tool-health", ".sh");
+        executable.deleteOnExit();
+        assertTrue(executable.setExecutable(true));
+        tool.setExecutablePath(executable.getPath());
+
+        health.recordFailure(tool, "exit 1");
+        health.recordFailure(tool, "exit 1");
+        health.probe(tool.getId(), health.getHealth(tool));
+        health.recordSuccess(tool);
+        assertNull(health.getHealth(tool));
+    }
+}
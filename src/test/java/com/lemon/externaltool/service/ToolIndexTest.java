@@ -0,0 +1,94 @@
+package com.lemon.externaltool.service;
+
+import com.lemon.externaltool.model.ExternalTool;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ToolIndexTest {
+
+    private static ExternalTool tool(String name, int sortOrder, String... extensions) {
+        ExternalTool tool = new ExternalTool(name, "/bin/" + name);
+        tool.setSortOrder(sortOrder);
+        tool.setSupportedExtensions(new ArrayList<>(Arrays.asList(extensions)));
+        return tool;
+    }
+
+    @Test
+    public void emptyConfigurationUsesTheSharedEmptyIndex() {
+        assertSame(ToolIndex.EMPTY, ToolIndex.build(null));
+        assertSame(ToolIndex.EMPTY, ToolIndex.build(Collections.emptyList()));
+        assertEquals(0, ToolIndex.EMPTY.lookup(".txt").length);
+    }
+
+    @Test
+    public void lookupNormalizesTheExtensionAndMergesAllFilesTools() {
+        ExternalTool markdown = tool("typora", 1, "MD", ".markdown");
+        ExternalTool any = tool("sublime", 0);
+        ToolIndex index = ToolIndex.build(Arrays.asList(markdown, any));
+
+        assertArrayEquals(new ExternalTool[]{any, markdown}, index.lookup(".md"));
+        assertArrayEquals(new ExternalTool[]{any, markdown}, index.lookup("md"));
+        assertArrayEquals(new ExternalTool[]{any, markdown}, index.lookup(".MARKDOWN"));
+        // Unknown extensions and files without one only get the all-files tools
+        assertArrayEquals(new ExternalTool[]{any}, index.lookup(".java"));
+        assertArrayEquals(new ExternalTool[]{any}, index.lookup(null));
+    }
+
+    @Test
+    public void disabledToolsAreLeftOut() {
+        ExternalTool enabled = tool("code", 0, ".js");
+        ExternalTool disabled = tool("old", 1, ".js");
+        disabled.setEnabled(false);
+        ToolIndex index = ToolIndex.build(Arrays.asList(enabled, disabled));
+        assertArrayEquals(new ExternalTool[]{enabled}, index.lookup(".js"));
+        assertArrayEquals(new ExternalTool[]{enabled}, index.getEnabledTools());
+    }
+
+    @Test
+    public void toolsAreOrderedBySortOrder() {
+        ExternalTool second = tool("b", 5, ".txt");
+        ExternalTool first = tool("a", 1, ".txt");
+        ToolIndex index = ToolIndex.build(Arrays.asList(second, first));
+        assertArrayEquals(new ExternalTool[]{first, second}, index.lookup(".txt"));
+    }
+
+    @Test
+    public void lookupCommonIntersectsExtensions() {
+        ExternalTool web = tool("code", 0, ".js", ".css");
+        ExternalTool css = tool("css-only", 1, ".css");
+        ExternalTool any = tool("vim", 2);
+        ToolIndex index = ToolIndex.build(Arrays.asList(web, css, any));
+
+        assertArrayEquals(new ExternalTool[]{web, any}, index.lookupCommon(Arrays.asList(".js", ".css")));
+        assertArrayEquals(new ExternalTool[]{web, css, any}, index.lookupCommon(Collections.singleton(".css")));
+        // A file without an extension narrows the selection to the all-files tools
+        assertArrayEquals(new ExternalTool[]{any}, index.lookupCommon(Arrays.asList(".js", null)));
+        assertEquals(0, index.lookupCommon(Collections.emptyList()).length);
+    }
+
+    @Test
+    public void lookupCommonWorksBeyondOneBitsetWord() {
+        List<ExternalTool> tools = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            tools.add(i % 2 == 0 ? tool("t" + i, i, ".a", ".b") : tool("t" + i, i, ".a"));
+        }
+        ToolIndex index = ToolIndex.build(tools);
+        ExternalTool[] common = index.lookupCommon(Arrays.asList(".a", ".b"));
+        assertEquals(65, common.length);
+        assertSame(tools.get(128), common[64]);
+    }
+
+    @Test
+    public void lookupCommonIsEmptyWhenNothingIsShared() {
+        ToolIndex index = ToolIndex.build(Arrays.asList(tool("x", 0, ".x"), tool("y", 1, ".y")));
+        assertEquals(0, index.lookupCommon(Arrays.asList(".x", ".y")).length);
+    }
+}